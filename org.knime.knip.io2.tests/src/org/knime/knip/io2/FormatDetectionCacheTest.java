@@ -0,0 +1,82 @@
+package org.knime.knip.io2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import io.scif.Format;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.scijava.io.location.FileLocation;
+
+/**
+ * Tests the keys of the {@link FormatDetectionCache}.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class FormatDetectionCacheTest {
+
+	@Rule
+	public final TemporaryFolder m_folder = new TemporaryFolder();
+
+	/**
+	 * The key uses the last extension of the name.
+	 */
+	@Test
+	public void testLastExtension() {
+		assertEquals("tif", FormatDetectionCache.getExtension("image.tif"));
+		assertEquals("tif", FormatDetectionCache.getExtension("image.v2.TIF"));
+		assertEquals("gz", FormatDetectionCache.getExtension("archive.tar.gz"));
+	}
+
+	/**
+	 * Known compound extensions identify their own format.
+	 */
+	@Test
+	public void testCompoundExtensions() {
+		assertEquals("ome.tif", FormatDetectionCache.getExtension("image.ome.tif"));
+		assertEquals("ome.tiff", FormatDetectionCache.getExtension("run.1.OME.TIFF"));
+		assertEquals("ome.btf", FormatDetectionCache.getExtension("image.ome.btf"));
+		assertEquals("nii.gz", FormatDetectionCache.getExtension("brain.nii.gz"));
+	}
+
+	/**
+	 * Names without extension have an empty one.
+	 */
+	@Test
+	public void testNoExtension() {
+		assertEquals("", FormatDetectionCache.getExtension("image"));
+		assertEquals("", FormatDetectionCache.getExtension(null));
+	}
+
+	/**
+	 * Files with the same extension and magic bytes share a key, the format of
+	 * the second file is detected by the cache.
+	 */
+	@Test
+	public void testSameKeyIsHit() throws Exception {
+		final FormatDetectionCache cache = new FormatDetectionCache();
+		final Format first = cache.getFormat(new FileLocation(pgm("first.v1.pgm")));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		final Format second = cache.getFormat(new FileLocation(pgm("second.pgm")));
+		assertSame(first, second);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	private File pgm(final String name) throws Exception {
+		final File file = m_folder.newFile(name);
+		final byte[] header = "P5\n2 2\n255\n".getBytes(StandardCharsets.US_ASCII);
+		final byte[] content = new byte[header.length + 4];
+		System.arraycopy(header, 0, content, 0, header.length);
+		Files.write(file.toPath(), content);
+		return file;
+	}
+}
@@ -0,0 +1,76 @@
+package org.knime.knip.io2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests the lazy initialization of the {@link IO2Gateway} singletons.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class IO2GatewayTest {
+
+	private static final int NUM_THREADS = 32;
+
+	/**
+	 * All threads that request the gateway services at the same time must see
+	 * the same fully initialized instances.
+	 */
+	@Test
+	public void testConcurrentAccessSeesSingleInstances() throws Exception {
+		final Set<Object> scifios = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+		final Set<Object> contexts = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+		final Set<Object> handles = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+		final ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < NUM_THREADS; i++) {
+				final int first = i % 3;
+				futures.add(executor.submit(() -> {
+					start.await();
+					// the threads race for the initialization of different services
+					for (int j = 0; j < 3; j++) {
+						switch ((first + j) % 3) {
+						case 0:
+							assertNotNull(IO2Gateway.scifio().getContext());
+							scifios.add(IO2Gateway.scifio());
+							break;
+						case 1:
+							contexts.add(IO2Gateway.context());
+							break;
+						default:
+							handles.add(IO2Gateway.handles());
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (final Future<?> f : futures) {
+				f.get(2, TimeUnit.MINUTES);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(1, scifios.size());
+		assertEquals(1, contexts.size());
+		assertEquals(1, handles.size());
+		assertEquals(IO2Gateway.context(), IO2Gateway.scifio().getContext());
+	}
+}
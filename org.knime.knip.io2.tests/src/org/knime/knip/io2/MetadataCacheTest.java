@@ -0,0 +1,125 @@
+package org.knime.knip.io2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.scif.Metadata;
+import io.scif.io.location.TestImgLocation;
+
+import java.io.File;
+import java.util.List;
+
+import net.imagej.axis.CalibratedAxis;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.scijava.io.location.FileLocation;
+
+/**
+ * Tests the keys, the snapshots and the weight of the {@link MetadataCache}.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class MetadataCacheTest {
+
+	@Rule
+	public final TemporaryFolder m_folder = new TemporaryFolder();
+
+	private Metadata m_meta;
+
+	@Before
+	public void setUp() throws Exception {
+		m_meta = IO2Gateway.scifio().initializer().parseMetadata(TestImgLocation.builder().name("meta")
+				.axes("X", "Y", "Z", "Time").lengths(16, 16, 4, 3).units("um", "um", "um", "s").images(2).build());
+	}
+
+	/**
+	 * Entries are keyed by the file and whether group files were read.
+	 */
+	@Test
+	public void testKeyIncludesGroupFiles() throws Exception {
+		final MetadataCache cache = new MetadataCache();
+		final FileLocation loc = new FileLocation(m_folder.newFile("image.tif"));
+		final MetadataCache.Entry entry = cache.put(loc, true, m_meta);
+
+		assertSame(entry, cache.get(loc, true));
+		assertNull(cache.get(loc, false));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	/**
+	 * A modified file is parsed again.
+	 */
+	@Test
+	public void testKeyIncludesModificationTime() throws Exception {
+		final MetadataCache cache = new MetadataCache();
+		final File file = m_folder.newFile("image.tif");
+		final FileLocation loc = new FileLocation(file);
+		cache.put(loc, false, m_meta);
+		assertNotNull(cache.get(loc, false));
+
+		assertTrue(file.setLastModified(file.lastModified() + 10000));
+		assertNull(cache.get(loc, false));
+	}
+
+	/**
+	 * Locations without a modification time are not cached.
+	 */
+	@Test
+	public void testNonFileLocationsAreNotCached() throws Exception {
+		final MetadataCache cache = new MetadataCache();
+		final TestImgLocation loc = TestImgLocation.builder().name("remote").axes("X", "Y").lengths(8, 8).build();
+		assertNotNull(cache.put(loc, false, m_meta));
+		assertNull(cache.get(loc, false));
+		assertEquals(0, cache.getWeight());
+	}
+
+	/**
+	 * The snapshot keeps the series and hands out copies of the axes.
+	 */
+	@Test
+	public void testAxesAreCopies() throws Exception {
+		final MetadataCache cache = new MetadataCache();
+		final MetadataCache.Entry entry = cache.put(new FileLocation(m_folder.newFile("image.tif")), false, m_meta);
+		assertEquals(2, entry.getSeriesCount());
+
+		final List<CalibratedAxis> axes = entry.get(0).getAxes();
+		assertEquals(4, axes.size());
+		assertEquals("um", axes.get(0).unit());
+		axes.get(0).setUnit("changed");
+
+		final List<CalibratedAxis> again = entry.get(0).getAxes();
+		assertNotSame(axes.get(0), again.get(0));
+		assertEquals("um", again.get(0).unit());
+	}
+
+	/**
+	 * The weight estimates bytes, the least recently used entries are evicted
+	 * once it exceeds the maximum.
+	 */
+	@Test
+	public void testWeightInBytes() throws Exception {
+		final MetadataCache sizing = new MetadataCache();
+		sizing.put(new FileLocation(m_folder.newFile("sizing.tif")), false, m_meta);
+		final long weight = sizing.getWeight();
+		// at least the axes lengths of both series
+		assertTrue(weight > 2 * 4 * Long.BYTES);
+
+		final MetadataCache cache = new MetadataCache(weight + weight / 2);
+		final FileLocation first = new FileLocation(m_folder.newFile("first.tif"));
+		final FileLocation second = new FileLocation(m_folder.newFile("second.tif"));
+		cache.put(first, false, m_meta);
+		cache.put(second, false, m_meta);
+
+		assertNull(cache.get(first, false));
+		assertNotNull(cache.get(second, false));
+		assertEquals(weight, cache.getWeight());
+	}
+}
@@ -0,0 +1,113 @@
+package org.knime.knip.io2;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import io.scif.Format;
+import io.scif.config.SCIFIOConfig;
+import io.scif.io.location.TestImgLocation;
+
+import org.junit.Test;
+import org.scijava.io.location.Location;
+
+/**
+ * Tests borrowing and eviction of the {@link ReaderPool}.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class ReaderPoolTest {
+
+	/**
+	 * A reader is borrowed by the location it points to, and only once.
+	 */
+	@Test
+	public void testBorrowByLocation() throws Exception {
+		final ReaderPool pool = new ReaderPool(4);
+		final UnclosableReaderFilter a = reader("a");
+		final UnclosableReaderFilter b = reader("b");
+		pool.release(a);
+		pool.release(b);
+
+		assertSame(a, pool.borrow(location("a")));
+		assertNull(pool.borrow(location("a")));
+		assertNull(pool.borrow(location("c")));
+		assertSame(b, pool.borrow(location("b")));
+		pool.close();
+	}
+
+	/**
+	 * Readers are borrowed by format, the least recently returned one first.
+	 */
+	@Test
+	public void testBorrowByFormat() throws Exception {
+		final ReaderPool pool = new ReaderPool(4);
+		final UnclosableReaderFilter a = reader("a");
+		final UnclosableReaderFilter b = reader("b");
+		pool.release(a);
+		pool.release(b);
+
+		final Class<? extends Format> format = a.getFormat().getClass();
+		assertSame(a, pool.borrow(format));
+		assertSame(b, pool.borrow(format));
+		assertNull(pool.borrow(format));
+		assertNull(pool.borrow(Format.class));
+		pool.close();
+	}
+
+	/**
+	 * Beyond its capacity the pool evicts the least recently returned readers.
+	 */
+	@Test
+	public void testEviction() throws Exception {
+		final ReaderPool pool = new ReaderPool(2);
+		pool.release(reader("a"));
+		pool.release(reader("b"));
+		pool.release(reader("c"));
+
+		assertNull(pool.borrow(location("a")));
+		assertNotNull(pool.borrow(location("b")));
+		assertNotNull(pool.borrow(location("c")));
+		pool.close();
+	}
+
+	/**
+	 * Shrinking the pool evicts the readers that exceed the new capacity.
+	 */
+	@Test
+	public void testShrinkEvicts() throws Exception {
+		final ReaderPool pool = new ReaderPool(3);
+		pool.release(reader("a"));
+		pool.release(reader("b"));
+		pool.release(reader("c"));
+
+		pool.setMaxIdle(1);
+		assertNull(pool.borrow(location("a")));
+		assertNull(pool.borrow(location("b")));
+		assertNotNull(pool.borrow(location("c")));
+		pool.close();
+	}
+
+	/**
+	 * Closing the pool removes all idle readers.
+	 */
+	@Test
+	public void testClose() throws Exception {
+		final ReaderPool pool = new ReaderPool(2);
+		pool.release(reader("a"));
+		pool.close();
+		assertNull(pool.borrow(location("a")));
+	}
+
+	private static Location location(final String name) {
+		return TestImgLocation.builder().name(name).axes("X", "Y").lengths(8, 8).build();
+	}
+
+	private static UnclosableReaderFilter reader(final String name) throws Exception {
+		final Location loc = location(name);
+		final Format format = IO2Gateway.scifio().format().getFormat(loc);
+		final UnclosableReaderFilter r = new UnclosableReaderFilter(format.createReader());
+		r.setMetadata(format.createParser().parse(loc, new SCIFIOConfig()));
+		return r;
+	}
+}
@@ -0,0 +1,198 @@
+package org.knime.knip.io2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import io.scif.io.location.TestImgLocation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import net.imagej.ImgPlus;
+import net.imagej.axis.Axes;
+import net.imagej.axis.DefaultTypedAxis;
+import net.imagej.axis.TypedAxis;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.io.location.Location;
+
+/**
+ * Tests the selection of series, planes and crops of a
+ * {@link ScifioImgSource}.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class ScifioImgSourceSelectionTest {
+
+	private static final long[] DIMS = { 32, 24, 5, 2 };
+
+	private ScifioImgSource m_source;
+
+	private Location m_loc;
+
+	@Before
+	public void setUp() {
+		m_source = new ScifioImgSource();
+		m_loc = TestImgLocation.builder().name("selection").axes("X", "Y", "Z", "Channel").lengths(DIMS).images(3)
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		m_source.close();
+	}
+
+	/**
+	 * Every series of a dataset can be read.
+	 */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void testSeries() throws Exception {
+		assertEquals(3, m_source.getSeriesCount(m_loc));
+		for (int series = 0; series < 3; series++) {
+			assertArrayEquals(DIMS, m_source.getDimensions(m_loc, series));
+			final ImgPlus<RealType> img = m_source.getImg(m_loc, series);
+			assertArrayEquals(DIMS, dimensions(img));
+		}
+	}
+
+	/**
+	 * The series of a file are read in order through the batch API, the crop of
+	 * each request is applied.
+	 */
+	@Test
+	public void testSeriesThroughBatch() throws Exception {
+		final FinalInterval crop = new FinalInterval(new long[] { 0, 0 }, new long[] { 9, 4 });
+		final List<ImgRequest> requests = new ArrayList<>();
+		for (int series = 0; series < 3; series++) {
+			requests.add(new ImgRequest(m_loc, series, null, crop));
+		}
+		try (Stream<ImgResult> results = m_source.getImgs(requests)) {
+			final List<ImgResult> list = results.collect(Collectors.toList());
+			assertEquals(3, list.size());
+			for (int series = 0; series < 3; series++) {
+				final ImgResult result = list.get(series);
+				assertFalse(result.getError().isPresent());
+				assertEquals(series, result.getRequest().getSeries());
+				assertArrayEquals(new long[] { 10, 5, 5, 2 }, dimensions(result.getImg()));
+			}
+		}
+	}
+
+	/**
+	 * Only the selected planes are read, indices outside of an axis are ignored.
+	 */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void testPlaneSelection() throws Exception {
+		final ImgPlus<RealType> full = m_source.getImg(m_loc, 0);
+		final ImgPlus<RealType> img = m_source.getImg(m_loc, 0,
+				constraints(new ValuePair<>(new DefaultTypedAxis(Axes.Z), new long[] { 3, 1, 7 }),
+						new ValuePair<>(new DefaultTypedAxis(Axes.CHANNEL), new long[] { 1 })));
+		assertArrayEquals(new long[] { 32, 24, 2, 1 }, dimensions(img));
+		assertEquals(value(full, 5, 6, 1, 1), value(img, 5, 6, 0, 0), 0);
+		assertEquals(value(full, 5, 6, 3, 1), value(img, 5, 6, 1, 0), 0);
+	}
+
+	/**
+	 * Selecting all indices of an axis does not reduce it.
+	 */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void testSelectAllPlanes() throws Exception {
+		final ImgPlus<RealType> img = m_source.getImg(m_loc, 0,
+				constraints(new ValuePair<>(new DefaultTypedAxis(Axes.Z), new long[] { 0, 1, 2, 3, 4 })));
+		assertArrayEquals(DIMS, dimensions(img));
+	}
+
+	/**
+	 * A selection without an index inside of the axis is rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyPlaneSelection() throws Exception {
+		m_source.getImg(m_loc, 0, constraints(new ValuePair<>(new DefaultTypedAxis(Axes.Z), new long[] { 5 })));
+	}
+
+	/**
+	 * Only the cropped region of each plane is read.
+	 */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void testCrop() throws Exception {
+		final ImgPlus<RealType> full = m_source.getImg(m_loc, 0);
+		final ImgPlus<RealType> img = m_source.getImg(m_loc, 0, null,
+				new FinalInterval(new long[] { 4, 2 }, new long[] { 19, 11 }));
+		assertArrayEquals(new long[] { 16, 10, 5, 2 }, dimensions(img));
+		assertEquals(value(full, 4, 2, 0, 0), value(img, 0, 0, 0, 0), 0);
+		assertEquals(value(full, 19, 11, 4, 1), value(img, 15, 9, 4, 1), 0);
+	}
+
+	/**
+	 * The crop replaces the selection of X and Y, the other axes are still
+	 * selected.
+	 */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void testCropReplacesXYSelection() throws Exception {
+		final ImgPlus<RealType> img = m_source.getImg(m_loc, 0,
+				constraints(new ValuePair<>(new DefaultTypedAxis(Axes.X), new long[] { 0 }),
+						new ValuePair<>(new DefaultTypedAxis(Axes.Z), new long[] { 2 })),
+				new FinalInterval(new long[] { 0, 0 }, new long[] { 7, 7 }));
+		assertArrayEquals(new long[] { 8, 8, 1, 2 }, dimensions(img));
+	}
+
+	/**
+	 * A crop exceeding the image is clipped to its extent.
+	 */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void testCropIsClipped() throws Exception {
+		final ImgPlus<RealType> img = m_source.getImg(m_loc, 0, null,
+				new FinalInterval(new long[] { -5, 20 }, new long[] { 100, 50 }));
+		assertArrayEquals(new long[] { 32, 4, 5, 2 }, dimensions(img));
+	}
+
+	/**
+	 * A crop that does not overlap the image is rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testCropOutsideImage() throws Exception {
+		m_source.getImg(m_loc, 0, null, new FinalInterval(new long[] { 40, 30 }, new long[] { 50, 40 }));
+	}
+
+	/**
+	 * Crops of more than the X and Y axes are rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testCropDimensions() throws Exception {
+		m_source.getImg(m_loc, 0, null, new FinalInterval(8, 8, 2));
+	}
+
+	@SafeVarargs
+	private static Pair<TypedAxis, long[]>[] constraints(final Pair<TypedAxis, long[]>... constraints) {
+		return constraints;
+	}
+
+	private static double value(@SuppressWarnings("rawtypes") final ImgPlus<RealType> img, final long... position) {
+		@SuppressWarnings("rawtypes")
+		final RandomAccess<RealType> ra = img.randomAccess();
+		ra.setPosition(position);
+		return ra.get().getRealDouble();
+	}
+
+	private static long[] dimensions(@SuppressWarnings("rawtypes") final ImgPlus<RealType> img) {
+		final long[] dims = new long[img.numDimensions()];
+		img.dimensions(dims);
+		return dims;
+	}
+}
@@ -0,0 +1,191 @@
+package org.knime.knip.io2.handle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.knime.knip.io2.IO2Gateway;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * Compares the reads of a handle with the reads of the default file handle of
+ * the same file.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public abstract class AbstractHandleComparisonTest {
+
+	/* Not a multiple of the block size, spans several read-aheads */
+	private static final int LENGTH = 3 * BlockCache.BLOCK_SIZE + 1234;
+
+	private static final int NUM_OPERATIONS = 2000;
+
+	@Rule
+	public final TemporaryFolder m_folder = new TemporaryFolder();
+
+	private File m_file;
+
+	private byte[] m_content;
+
+	private DataHandle<? extends Location> m_expected;
+
+	private DataHandle<Location> m_actual;
+
+	@Before
+	public void setUp() throws IOException {
+		m_content = new byte[LENGTH];
+		new Random(42).nextBytes(m_content);
+		m_file = m_folder.newFile("image.bin");
+		Files.write(m_file.toPath(), m_content);
+		m_expected = IO2Gateway.handles().create(new FileLocation(m_file));
+		m_actual = open(m_file);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		m_expected.close();
+		m_actual.close();
+	}
+
+	/**
+	 * @param file the file
+	 * @return the tested handle reading the given file
+	 * @throws IOException if the handle cannot be opened
+	 */
+	protected abstract DataHandle<Location> open(File file) throws IOException;
+
+	/**
+	 * Reading the file in small chunks returns its content.
+	 */
+	@Test
+	public void testSequentialReads() throws IOException {
+		assertEquals(LENGTH, m_actual.length());
+		final byte[] read = new byte[LENGTH];
+		int pos = 0;
+		int chunk = 1;
+		while (pos < LENGTH) {
+			final int n = m_actual.read(read, pos, Math.min(chunk, LENGTH - pos));
+			assertEquals(Math.min(chunk, LENGTH - pos), n);
+			pos += n;
+			chunk = chunk * 3 % 70001 + 1;
+		}
+		assertArrayEquals(m_content, read);
+		assertEquals(LENGTH, m_actual.offset());
+		assertEquals(-1, m_actual.read());
+		assertEquals(-1, m_actual.read(new byte[10], 0, 10));
+	}
+
+	/**
+	 * Random seeks, reads and skips behave like the file handle.
+	 */
+	@Test
+	public void testRandomAccess() throws IOException {
+		final Random random = new Random(7);
+		for (int i = 0; i < NUM_OPERATIONS; i++) {
+			final String op;
+			switch (random.nextInt(6)) {
+			case 0: {
+				final long pos = random.nextInt(LENGTH + 1);
+				op = "seek(" + pos + ")";
+				m_expected.seek(pos);
+				m_actual.seek(pos);
+				break;
+			}
+			case 1:
+				op = "read()";
+				assertEquals(op, m_expected.read(), m_actual.read());
+				break;
+			case 2:
+				op = "readByte()";
+				assertEquals(op, readByte(m_expected), readByte(m_actual));
+				break;
+			case 3: {
+				// small reads are buffered, reads beyond the read-ahead bypass it
+				final int len = random.nextBoolean() ? random.nextInt(100) : random.nextInt(2 * BlockCache.BLOCK_SIZE);
+				op = "read(" + len + ")";
+				final byte[] expected = new byte[len];
+				final byte[] actual = new byte[len];
+				assertEquals(op, m_expected.read(expected, 0, len), m_actual.read(actual, 0, len));
+				assertArrayEquals(op, expected, actual);
+				break;
+			}
+			case 4: {
+				final int len = random.nextInt(BlockCache.BLOCK_SIZE);
+				op = "readFully(" + len + ")";
+				assertArrayEquals(op, readFully(m_expected, len), readFully(m_actual, len));
+				break;
+			}
+			default: {
+				final int n = random.nextInt(BlockCache.BLOCK_SIZE);
+				op = "skipBytes(" + n + ")";
+				assertEquals(op, m_expected.skipBytes(n), m_actual.skipBytes(n));
+				break;
+			}
+			}
+			assertEquals("offset after " + op, m_expected.offset(), m_actual.offset());
+		}
+	}
+
+	/**
+	 * Reads past the end of the file fail like the file handle.
+	 */
+	@Test
+	public void testEndOfFile() throws IOException {
+		m_actual.seek(LENGTH - 10);
+		final byte[] b = new byte[100];
+		assertEquals(10, m_actual.read(b, 0, b.length));
+		assertArrayEquals(Arrays.copyOfRange(m_content, LENGTH - 10, LENGTH), Arrays.copyOf(b, 10));
+
+		m_actual.seek(LENGTH - 10);
+		try {
+			m_actual.readFully(b, 0, b.length);
+			fail("Expected an EOFException");
+		} catch (final EOFException e) {
+			// expected
+		}
+
+		m_actual.seek(LENGTH);
+		try {
+			m_actual.readByte();
+			fail("Expected an EOFException");
+		} catch (final EOFException e) {
+			// expected
+		}
+	}
+
+	/* The read byte or null at the end of the file */
+	private static Byte readByte(final DataHandle<? extends Location> handle) throws IOException {
+		try {
+			return handle.readByte();
+		} catch (final EOFException e) {
+			return null;
+		}
+	}
+
+	/* The read bytes or null if the file ended, the offset is restored in that case */
+	private static byte[] readFully(final DataHandle<? extends Location> handle, final int len) throws IOException {
+		final long offset = handle.offset();
+		final byte[] b = new byte[len];
+		try {
+			handle.readFully(b, 0, len);
+			return b;
+		} catch (final EOFException e) {
+			handle.seek(offset);
+			return null;
+		}
+	}
+}
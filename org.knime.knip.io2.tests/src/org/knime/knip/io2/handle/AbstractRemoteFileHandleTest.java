@@ -0,0 +1,164 @@
+package org.knime.knip.io2.handle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformation;
+import org.knime.core.util.KnimeEncryption;
+import org.knime.knip.io2.resolver.RemoteLocation;
+
+/**
+ * Tests the connection pooling of {@link RemoteFileHandle} against an embedded
+ * server.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public abstract class AbstractRemoteFileHandleTest {
+
+	protected static final String USER = "knip";
+
+	protected static final String PASSWORD = "secret";
+
+	private static final String FILE_NAME = "image.bin";
+
+	/* Not a multiple of the block size, the stream is released after the last block */
+	private static final int LENGTH = BlockCache.BLOCK_SIZE + 1000;
+
+	@Rule
+	public final TemporaryFolder m_folder = new TemporaryFolder();
+
+	private byte[] m_content;
+
+	private int m_port;
+
+	@Before
+	public void setUp() throws Exception {
+		m_content = new byte[LENGTH];
+		new Random(42).nextBytes(m_content);
+		Files.write(new File(m_folder.getRoot(), FILE_NAME).toPath(), m_content);
+
+		try (ServerSocket socket = new ServerSocket(0)) {
+			m_port = socket.getLocalPort();
+		}
+		startServer(m_port, m_folder.getRoot());
+		RemoteConnectionPool.getInstance().closeIdle();
+		BlockCache.getInstance().clear();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		RemoteConnectionPool.getInstance().closeIdle();
+		BlockCache.getInstance().clear();
+		stopServer();
+	}
+
+	/**
+	 * @return the protocol of the server, e.g. <i>sftp</i>
+	 */
+	protected abstract String getProtocol();
+
+	/**
+	 * Starts the server, it accepts {@link #USER} with {@link #PASSWORD}.
+	 *
+	 * @param port the port to listen on
+	 * @param root the directory that is served
+	 */
+	protected abstract void startServer(int port, File root) throws Exception;
+
+	/**
+	 * Stops the server and closes all of its sessions.
+	 */
+	protected abstract void stopServer() throws Exception;
+
+	/**
+	 * Consecutive reads of the same server reuse the pooled connection.
+	 */
+	@Test
+	public void testConnectionIsReused() throws Exception {
+		final RemoteConnectionPool pool = RemoteConnectionPool.getInstance();
+		final ConnectionInformation info = createConnectionInformation(PASSWORD);
+		final long created = pool.getCreatedCount();
+		final long reused = pool.getReusedCount();
+
+		for (int i = 0; i < 3; i++) {
+			assertArrayEquals(m_content, read(info));
+			// read from the server again instead of the block cache
+			BlockCache.getInstance().clear();
+		}
+
+		assertEquals(1, pool.getCreatedCount() - created);
+		assertEquals(2, pool.getReusedCount() - reused);
+	}
+
+	/**
+	 * A connection that fails to authenticate is reported and not pooled.
+	 */
+	@Test
+	public void testAuthenticationFailure() throws Exception {
+		final RemoteConnectionPool pool = RemoteConnectionPool.getInstance();
+		final ConnectionInformation info = createConnectionInformation("wrong");
+		final long reused = pool.getReusedCount();
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				read(info);
+				fail("Read with a wrong password succeeded");
+			} catch (final IOException e) {
+				// expected
+			}
+		}
+		assertEquals(reused, pool.getReusedCount());
+	}
+
+	/**
+	 * An idle connection whose session was closed by a restart of the server is
+	 * replaced by a new connection.
+	 */
+	@Test
+	public void testReconnectAfterServerRestart() throws Exception {
+		final RemoteConnectionPool pool = RemoteConnectionPool.getInstance();
+		final ConnectionInformation info = createConnectionInformation(PASSWORD);
+		assertArrayEquals(m_content, read(info));
+		BlockCache.getInstance().clear();
+
+		stopServer();
+		startServer(m_port, m_folder.getRoot());
+
+		final long created = pool.getCreatedCount();
+		assertArrayEquals(m_content, read(info));
+		assertEquals(1, pool.getCreatedCount() - created);
+	}
+
+	private byte[] read(final ConnectionInformation info) throws IOException {
+		final URI uri = URI.create(getProtocol() + "://localhost:" + m_port + "/" + FILE_NAME);
+		try (RemoteFileHandle handle = new RemoteFileHandle()) {
+			handle.set(new RemoteLocation(uri, info));
+			final byte[] b = new byte[(int) handle.length()];
+			handle.readFully(b, 0, b.length);
+			return b;
+		}
+	}
+
+	private ConnectionInformation createConnectionInformation(final String password) throws Exception {
+		final ConnectionInformation info = new ConnectionInformation();
+		info.setProtocol(getProtocol());
+		info.setHost("localhost");
+		info.setPort(m_port);
+		info.setUser(USER);
+		info.setPassword(KnimeEncryption.encrypt(password.toCharArray()));
+		return info;
+	}
+}
@@ -0,0 +1,78 @@
+package org.knime.knip.io2.handle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.knime.knip.io2.IO2Gateway;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * Compares the reads of a {@link BlockCachedHandle} with the file handle it
+ * caches.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class BlockCachedHandleTest extends AbstractHandleComparisonTest {
+
+	@Before
+	public void clearCache() {
+		BlockCache.getInstance().clear();
+	}
+
+	@After
+	public void clearCacheAfter() {
+		BlockCache.getInstance().clear();
+	}
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected DataHandle<Location> open(final File file) {
+		return new BlockCachedHandle((DataHandle) IO2Gateway.handles().create(new FileLocation(file)), file);
+	}
+
+	/**
+	 * A second handle of the unchanged file is served from the cache, a
+	 * modified file is read again.
+	 */
+	@Test
+	public void testModifiedFileIsReadAgain() throws IOException {
+		final File file = m_folder.newFile("cached.bin");
+		final byte[] first = randomBytes(BlockCache.BLOCK_SIZE + 100, 1);
+		Files.write(file.toPath(), first);
+		assertArrayEquals(first, readAll(file));
+
+		final long misses = BlockCache.getInstance().getMissCount();
+		assertArrayEquals(first, readAll(file));
+		assertEquals(misses, BlockCache.getInstance().getMissCount());
+
+		final byte[] second = randomBytes(BlockCache.BLOCK_SIZE + 100, 2);
+		Files.write(file.toPath(), second);
+		assertTrue(file.setLastModified(file.lastModified() + 10000));
+		assertArrayEquals(second, readAll(file));
+	}
+
+	private byte[] readAll(final File file) throws IOException {
+		try (DataHandle<Location> handle = open(file)) {
+			final byte[] b = new byte[(int) handle.length()];
+			handle.readFully(b, 0, b.length);
+			return b;
+		}
+	}
+
+	private static byte[] randomBytes(final int length, final long seed) {
+		final byte[] b = new byte[length];
+		new Random(seed).nextBytes(b);
+		return b;
+	}
+}
@@ -0,0 +1,57 @@
+package org.knime.knip.io2.handle;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.Authority;
+import org.apache.ftpserver.ftplet.UserManager;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+
+/**
+ * Tests {@link RemoteFileHandle} against an embedded FTP server.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class FTPRemoteFileHandleTest extends AbstractRemoteFileHandleTest {
+
+	private FtpServer m_server;
+
+	@Override
+	protected String getProtocol() {
+		return "ftp";
+	}
+
+	@Override
+	protected void startServer(final int port, final File root) throws Exception {
+		final FtpServerFactory serverFactory = new FtpServerFactory();
+		final ListenerFactory listenerFactory = new ListenerFactory();
+		listenerFactory.setServerAddress("localhost");
+		listenerFactory.setPort(port);
+		serverFactory.addListener("default", listenerFactory.createListener());
+
+		final UserManager users = new PropertiesUserManagerFactory().createUserManager();
+		final BaseUser user = new BaseUser();
+		user.setName(USER);
+		user.setPassword(PASSWORD);
+		user.setHomeDirectory(root.getAbsolutePath());
+		user.setAuthorities(Arrays.<Authority> asList(new ConcurrentLoginPermission(0, 0)));
+		users.save(user);
+		serverFactory.setUserManager(users);
+
+		m_server = serverFactory.createServer();
+		m_server.start();
+	}
+
+	@Override
+	protected void stopServer() throws Exception {
+		if (m_server != null) {
+			m_server.stop();
+			m_server = null;
+		}
+	}
+}
@@ -0,0 +1,297 @@
+package org.knime.knip.io2.handle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.knime.knip.io2.resolver.HTTPLocation;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests {@link HTTPRangeHandle} against an embedded HTTP server.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class HTTPRangeHandleTest {
+
+	private static final int LENGTH = 3 * BlockCache.BLOCK_SIZE + BlockCache.BLOCK_SIZE / 2;
+
+	private HttpServer m_server;
+
+	private ExecutorService m_serverExecutor;
+
+	private final AtomicReference<byte[]> m_content = new AtomicReference<>(randomBytes(LENGTH, 1));
+
+	private volatile String m_etag = "\"v1\"";
+
+	private volatile boolean m_rangesSupported = true;
+
+	/* Released to let the server answer GET requests */
+	private volatile CountDownLatch m_release = new CountDownLatch(0);
+
+	/* Start offset of each requested range, -1 for requests of the complete file */
+	private final Queue<Long> m_gets = new ConcurrentLinkedQueue<>();
+
+	@Before
+	public void startServer() throws IOException {
+		BlockCache.getInstance().clear();
+		m_server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		m_server.createContext("/", this::handle);
+		m_serverExecutor = Executors.newCachedThreadPool();
+		m_server.setExecutor(m_serverExecutor);
+		m_server.start();
+	}
+
+	@After
+	public void stopServer() {
+		m_release.countDown();
+		m_server.stop(0);
+		m_serverExecutor.shutdownNow();
+		BlockCache.getInstance().clear();
+	}
+
+	/**
+	 * Only the blocks around the read position are requested with range
+	 * requests.
+	 */
+	@Test
+	public void testRangeRequests() throws IOException {
+		final byte[] content = m_content.get();
+		try (HTTPRangeHandle handle = open("range.tif")) {
+			assertEquals(LENGTH, handle.length());
+
+			final long pos = 2L * BlockCache.BLOCK_SIZE + 10;
+			final byte[] b = new byte[100];
+			handle.seek(pos);
+			handle.readFully(b, 0, b.length);
+			assertArrayEquals(Arrays.copyOfRange(content, (int) pos, (int) pos + b.length), b);
+			assertEquals(pos + b.length, handle.offset());
+		}
+		assertFalse(m_gets.contains(-1L));
+		assertFalse(m_gets.contains(0L));
+		assertFalse(m_gets.contains((long) BlockCache.BLOCK_SIZE));
+		assertTrue(m_gets.contains(2L * BlockCache.BLOCK_SIZE));
+	}
+
+	/**
+	 * A server without range support sends the complete file once, all of its
+	 * blocks are cached.
+	 */
+	@Test
+	public void testFullBodyWithoutRanges() throws IOException {
+		m_rangesSupported = false;
+		final byte[] content = m_content.get();
+		try (HTTPRangeHandle handle = open("full.tif")) {
+			handle.seek(2L * BlockCache.BLOCK_SIZE);
+			assertEquals(content[2 * BlockCache.BLOCK_SIZE], handle.readByte());
+
+			final byte[] b = new byte[LENGTH];
+			handle.seek(0);
+			handle.readFully(b, 0, b.length);
+			assertArrayEquals(content, b);
+			assertEquals(-1, handle.read());
+		}
+		assertEquals(Arrays.asList(-1L), new ArrayList<>(m_gets));
+	}
+
+	/**
+	 * Without range support the file is downloaded once per handle, blocks that
+	 * were evicted from the cache are read from the download.
+	 */
+	@Test
+	public void testEvictedBlocksWithoutRangesAreNotDownloadedAgain() throws IOException {
+		m_rangesSupported = false;
+		final byte[] content = m_content.get();
+		try (HTTPRangeHandle handle = open("evicted.tif")) {
+			assertArrayEquals(content, readAll(handle));
+			BlockCache.getInstance().clear();
+			assertArrayEquals(content, readAll(handle));
+		}
+		assertEquals(Arrays.asList(-1L), new ArrayList<>(m_gets));
+	}
+
+	/**
+	 * Blocks are cached per ETag, a changed ETag makes the handle read the new
+	 * content.
+	 */
+	@Test
+	public void testETagChangeInvalidates() throws IOException {
+		final byte[] first = m_content.get();
+		try (HTTPRangeHandle handle = open("etag.tif")) {
+			assertArrayEquals(first, readAll(handle));
+		}
+		final int requests = m_gets.size();
+
+		// same ETag, served from the cache
+		try (HTTPRangeHandle handle = open("etag.tif")) {
+			assertArrayEquals(first, readAll(handle));
+		}
+		assertEquals(requests, m_gets.size());
+
+		final byte[] second = randomBytes(LENGTH, 2);
+		m_content.set(second);
+		m_etag = "\"v2\"";
+		try (HTTPRangeHandle handle = open("etag.tif")) {
+			assertArrayEquals(second, readAll(handle));
+		}
+		assertTrue(m_gets.size() > requests);
+	}
+
+	/**
+	 * Without ETag and modification date the blocks are only cached while the
+	 * handle is open.
+	 */
+	@Test
+	public void testUnversionedBlocksAreNotShared() throws IOException {
+		m_etag = null;
+		try (HTTPRangeHandle handle = open("unversioned.tif")) {
+			assertArrayEquals(m_content.get(), readAll(handle));
+		}
+		final int requests = m_gets.size();
+
+		final byte[] second = randomBytes(LENGTH, 3);
+		m_content.set(second);
+		try (HTTPRangeHandle handle = open("unversioned.tif")) {
+			assertArrayEquals(second, readAll(handle));
+		}
+		assertTrue(m_gets.size() > requests);
+	}
+
+	/**
+	 * Handles that miss the same blocks at the same time share the requests of
+	 * the blocks that are in flight, including the prefetched ones.
+	 */
+	@Test
+	public void testConcurrentPrefetchSharesRequests() throws Exception {
+		m_release = new CountDownLatch(1);
+		final byte[] content = m_content.get();
+
+		final int numThreads = 8;
+		final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < numThreads; i++) {
+			final Thread t = new Thread(() -> {
+				try (HTTPRangeHandle handle = open("concurrent.tif")) {
+					final byte[] b = new byte[16];
+					handle.readFully(b, 0, b.length);
+					assertArrayEquals(Arrays.copyOf(content, b.length), b);
+				} catch (final Throwable e) {
+					errors.add(e);
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+
+		// wait until all threads wait for the blocked requests
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (threads.stream().anyMatch(t -> t.getState() != Thread.State.WAITING)) {
+			assertTrue("Threads did not block on the pending request", System.nanoTime() < deadline);
+			Thread.sleep(10);
+		}
+		m_release.countDown();
+		for (final Thread t : threads) {
+			t.join(TimeUnit.SECONDS.toMillis(30));
+		}
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		// the missed block and its two prefetched successors, each requested once
+		assertEquals(3, m_gets.size());
+		assertEquals(3, m_gets.stream().distinct().count());
+	}
+
+	private HTTPRangeHandle open(final String name) {
+		final HTTPRangeHandle handle = new HTTPRangeHandle();
+		handle.set(new HTTPLocation(
+				URI.create("http://localhost:" + m_server.getAddress().getPort() + "/" + name)));
+		return handle;
+	}
+
+	private static byte[] readAll(final HTTPRangeHandle handle) throws IOException {
+		final byte[] b = new byte[(int) handle.length()];
+		handle.seek(0);
+		handle.readFully(b, 0, b.length);
+		return b;
+	}
+
+	private static byte[] randomBytes(final int length, final long seed) {
+		final byte[] b = new byte[length];
+		new Random(seed).nextBytes(b);
+		return b;
+	}
+
+	/*
+	 * Answers HEAD requests with the file metadata, GET requests with the
+	 * requested range or the complete file.
+	 */
+	private void handle(final HttpExchange exchange) throws IOException {
+		final byte[] content = m_content.get();
+		final String etag = m_etag;
+		if (etag != null) {
+			exchange.getResponseHeaders().set("ETag", etag);
+		}
+		if (m_rangesSupported) {
+			exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+		}
+
+		if ("HEAD".equals(exchange.getRequestMethod())) {
+			exchange.getResponseHeaders().set("Content-Length", Integer.toString(content.length));
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+			return;
+		}
+
+		try {
+			m_release.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+
+		final String range = exchange.getRequestHeaders().getFirst("Range");
+		final int start;
+		final int end;
+		final int code;
+		if (m_rangesSupported && range != null && range.startsWith("bytes=")) {
+			final String[] bounds = range.substring("bytes=".length()).split("-");
+			start = Integer.parseInt(bounds[0]);
+			end = Math.min(Integer.parseInt(bounds[1]), content.length - 1);
+			exchange.getResponseHeaders().set("Content-Range",
+					"bytes " + start + "-" + end + "/" + content.length);
+			code = 206;
+			m_gets.add((long) start);
+		} else {
+			start = 0;
+			end = content.length - 1;
+			code = 200;
+			m_gets.add(-1L);
+		}
+
+		exchange.sendResponseHeaders(code, end - start + 1);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(content, start, end - start + 1);
+		}
+	}
+}
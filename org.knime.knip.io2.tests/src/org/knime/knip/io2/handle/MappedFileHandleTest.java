@@ -0,0 +1,63 @@
+package org.knime.knip.io2.handle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+import org.knime.knip.io2.IO2Gateway;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * Compares the reads of a {@link MappedFileHandle} with the file handle of the
+ * same file.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class MappedFileHandleTest extends AbstractHandleComparisonTest {
+
+	@Override
+	protected DataHandle<Location> open(final File file) {
+		final DataHandle<Location> handle = MappedFileHandle.openForReading(new FileLocation(file));
+		assertTrue(handle instanceof MappedFileHandle);
+		return handle;
+	}
+
+	/**
+	 * Multi-byte values are read from the mapping in both byte orders.
+	 */
+	@Test
+	public void testTypedReads() throws IOException {
+		final File file = m_folder.newFile("typed.bin");
+		final byte[] content = new byte[1000];
+		new Random(3).nextBytes(content);
+		Files.write(file.toPath(), content);
+
+		final Random random = new Random(5);
+		try (DataHandle<? extends Location> expected = IO2Gateway.handles().create(new FileLocation(file));
+				DataHandle<Location> actual = open(file)) {
+			for (final boolean little : new boolean[] { false, true }) {
+				expected.setLittleEndian(little);
+				actual.setLittleEndian(little);
+				for (int i = 0; i < 200; i++) {
+					final long pos = random.nextInt(content.length - 8);
+					expected.seek(pos);
+					actual.seek(pos);
+					assertEquals(expected.readShort(), actual.readShort());
+					assertEquals(expected.readInt(), actual.readInt());
+					assertEquals(expected.offset(), actual.offset());
+					expected.seek(pos);
+					actual.seek(pos);
+					assertEquals(expected.readLong(), actual.readLong());
+					assertEquals(expected.offset(), actual.offset());
+				}
+			}
+		}
+	}
+}
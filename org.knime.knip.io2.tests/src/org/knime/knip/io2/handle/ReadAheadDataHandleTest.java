@@ -0,0 +1,23 @@
+package org.knime.knip.io2.handle;
+
+import java.io.File;
+
+import org.knime.knip.io2.IO2Gateway;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * Compares the reads of a {@link ReadAheadDataHandle} with the file handle it
+ * buffers.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class ReadAheadDataHandleTest extends AbstractHandleComparisonTest {
+
+	@Override
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected DataHandle<Location> open(final File file) {
+		return new ReadAheadDataHandle((DataHandle) IO2Gateway.handles().create(new FileLocation(file)));
+	}
+}
@@ -0,0 +1,68 @@
+package org.knime.knip.io2.handle;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformation;
+import org.knime.base.filehandling.remote.files.ConnectionMonitor;
+
+/**
+ * Tests the reuse and closing of the connections of the
+ * {@link RemoteConnectionPool}.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class RemoteConnectionPoolTest {
+
+	private final RemoteConnectionPool m_pool = RemoteConnectionPool.getInstance();
+
+	private ConnectionInformation m_info;
+
+	@Before
+	public void setUp() {
+		m_pool.closeIdle();
+		m_info = new ConnectionInformation();
+		m_info.setProtocol("sftp");
+		m_info.setHost("pool.test");
+		m_info.setPort(22);
+		m_info.setUser("knip");
+	}
+
+	@After
+	public void tearDown() {
+		m_pool.closeIdle();
+	}
+
+	/**
+	 * A returned connection is borrowed again.
+	 */
+	@Test
+	public void testReleasedConnectionIsReused() {
+		final ConnectionMonitor<?> monitor = m_pool.borrow(m_info);
+		m_pool.release(m_info, monitor);
+		assertSame(monitor, m_pool.borrowIdle(m_info));
+		m_pool.discard(monitor);
+		assertNull(m_pool.borrowIdle(m_info));
+	}
+
+	/**
+	 * Connections that were borrowed when the idle connections were closed are
+	 * closed once they are returned.
+	 */
+	@Test
+	public void testBorrowedConnectionIsClosedOnRelease() {
+		final ConnectionMonitor<?> borrowed = m_pool.borrow(m_info);
+		m_pool.closeIdle();
+		m_pool.release(m_info, borrowed);
+		assertNull(m_pool.borrowIdle(m_info));
+
+		// connections borrowed afterwards are pooled again
+		final ConnectionMonitor<?> next = m_pool.borrow(m_info);
+		m_pool.release(m_info, next);
+		assertSame(next, m_pool.borrowIdle(m_info));
+		m_pool.discard(next);
+	}
+}
@@ -0,0 +1,49 @@
+package org.knime.knip.io2.handle;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.sshd.common.NamedFactory;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.Command;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.subsystem.sftp.SftpSubsystemFactory;
+
+/**
+ * Tests {@link RemoteFileHandle} against an embedded SFTP server.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class SFTPRemoteFileHandleTest extends AbstractRemoteFileHandleTest {
+
+	private SshServer m_server;
+
+	@Override
+	protected String getProtocol() {
+		return "sftp";
+	}
+
+	@Override
+	protected void startServer(final int port, final File root) throws Exception {
+		m_server = SshServer.setUpDefaultServer();
+		m_server.setHost("localhost");
+		m_server.setPort(port);
+		// the same host key after a restart
+		m_server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider(new File(root, ".hostkey").toPath()));
+		m_server.setPasswordAuthenticator((user, password, session) -> USER.equals(user)
+				&& PASSWORD.equals(password));
+		m_server.setSubsystemFactories(
+				Collections.<NamedFactory<Command>> singletonList(new SftpSubsystemFactory()));
+		m_server.setFileSystemFactory(new VirtualFileSystemFactory(root.toPath()));
+		m_server.start();
+	}
+
+	@Override
+	protected void stopServer() throws Exception {
+		if (m_server != null) {
+			m_server.stop(true);
+			m_server = null;
+		}
+	}
+}
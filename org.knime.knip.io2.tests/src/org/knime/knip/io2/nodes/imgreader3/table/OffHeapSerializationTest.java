@@ -0,0 +1,113 @@
+package org.knime.knip.io2.nodes.imgreader3.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import net.imagej.ImgPlus;
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+import org.knime.knip.core.io.externalization.BufferedDataInputStream;
+import org.knime.knip.core.io.externalization.BufferedDataOutputStream;
+import org.knime.knip.core.io.externalization.ExternalizerManager;
+import org.knime.knip.io2.OffHeapImgFactory;
+
+/**
+ * Tests that images with off-heap storage are written by the KNIP externalizer,
+ * which the image cells use.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class OffHeapSerializationTest {
+
+	/**
+	 * The serializable copy of an off-heap image round trips through the
+	 * externalizer and stays valid after the native memory is released.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Test
+	public void testOffHeapImgIsExternalizable() throws Exception {
+		final Img<UnsignedShortType> img = new OffHeapImgFactory<>(new UnsignedShortType()).create(64, 32);
+		int i = 0;
+		for (final UnsignedShortType t : img) {
+			t.set(i++ % 65536);
+		}
+		final ImgPlus<RealType> imgPlus = new ImgPlus(img);
+		assertTrue(OffHeapImgFactory.isOffHeap(imgPlus));
+
+		final ImgPlus<RealType> serializable = ImgReaderTableNodeModel.toSerializable(imgPlus);
+		assertNotSame(imgPlus, serializable);
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final BufferedDataOutputStream out = new BufferedDataOutputStream(bytes);
+		ExternalizerManager.write(out, serializable.getImg());
+		out.flush();
+		out.close();
+
+		assertTrue(OffHeapImgFactory.free(img));
+
+		final BufferedDataInputStream in = new BufferedDataInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()));
+		final Img<UnsignedShortType> read = ExternalizerManager.read(in);
+		in.close();
+
+		assertEquals(64, read.dimension(0));
+		assertEquals(32, read.dimension(1));
+		final Cursor<UnsignedShortType> c = Views.flatIterable(read).cursor();
+		i = 0;
+		while (c.hasNext()) {
+			assertEquals(i++ % 65536, c.next().get());
+		}
+		assertEquals(64 * 32, i);
+	}
+
+	/**
+	 * The image kept by the cell is a heap copy, it can still be read after the
+	 * native memory of the off-heap image has been released.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Test
+	public void testCellImgIsReadableAfterFree() {
+		final Img<UnsignedShortType> img = new OffHeapImgFactory<>(new UnsignedShortType()).create(16, 8, 3);
+		int i = 0;
+		for (final UnsignedShortType t : img) {
+			t.set(i++);
+		}
+		final ImgPlus<RealType> serializable = ImgReaderTableNodeModel.toSerializable(new ImgPlus(img));
+		assertTrue(serializable.getImg() instanceof ArrayImg);
+		assertFalse(OffHeapImgFactory.isOffHeap(serializable));
+
+		assertTrue(OffHeapImgFactory.free(img));
+
+		assertEquals(3, serializable.numDimensions());
+		final Cursor<RealType> c = Views.flatIterable((Img<RealType>) serializable.getImg()).cursor();
+		i = 0;
+		while (c.hasNext()) {
+			assertEquals(i++, c.next().getRealDouble(), 0);
+		}
+		assertEquals(16 * 8 * 3, i);
+	}
+
+	/**
+	 * Images that are backed by java arrays are written as they are.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Test
+	public void testArrayImgIsNotWrapped() {
+		final ImgPlus<RealType> imgPlus = new ImgPlus(
+				new ArrayImgFactory<>(new UnsignedShortType()).create(new long[] { 4, 4 }, new UnsignedShortType()));
+		assertSame(imgPlus, ImgReaderTableNodeModel.toSerializable(imgPlus));
+	}
+}
@@ -0,0 +1,113 @@
+package org.knime.knip.io2.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformation;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * Tests the expiry and the exemptions of the {@link ResolvedLocationCache}.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class ResolvedLocationCacheTest {
+
+	private static final URI FILE = URI.create("file:/tmp/image.tif");
+
+	private static final URI REMOTE = URI.create("http://localhost/image.tif");
+
+	/**
+	 * Local files resolved without connection information never expire.
+	 */
+	@Test
+	public void testFileLocationsDoNotExpire() throws Exception {
+		final ResolvedLocationCache cache = new ResolvedLocationCache(1);
+		final Location loc = new FileLocation(new File("/tmp/image.tif"));
+		cache.put(FILE, null, loc);
+		Thread.sleep(5);
+		assertSame(loc, cache.get(FILE, null));
+		assertEquals(1, cache.getHitCount());
+	}
+
+	/**
+	 * Locations of other schemes are resolved again after the time to live.
+	 */
+	@Test
+	public void testRemoteLocationsExpire() throws Exception {
+		final ResolvedLocationCache cache = new ResolvedLocationCache(TimeUnit.MILLISECONDS.toNanos(50));
+		final Location loc = new HTTPLocation(REMOTE);
+		cache.put(REMOTE, null, loc);
+		assertSame(loc, cache.get(REMOTE, null));
+
+		Thread.sleep(100);
+		assertNull(cache.get(REMOTE, null));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	/**
+	 * Files resolved with connection information expire like remote locations.
+	 */
+	@Test
+	public void testAuthenticatedFileLocationsExpire() throws Exception {
+		final ResolvedLocationCache cache = new ResolvedLocationCache(1);
+		final ConnectionInformation info = new ConnectionInformation();
+		cache.put(FILE, info, new FileLocation(new File("/tmp/image.tif")));
+		Thread.sleep(5);
+		assertNull(cache.get(FILE, info));
+	}
+
+	/**
+	 * The same uri resolved with other connection information is not a hit.
+	 */
+	@Test
+	public void testLocationsAreKeyedByConnection() {
+		final ResolvedLocationCache cache = new ResolvedLocationCache();
+		final ConnectionInformation info = new ConnectionInformation();
+		info.setHost("localhost");
+		final Location loc = new RemoteLocation(REMOTE, info);
+		cache.put(REMOTE, info, loc);
+		assertSame(loc, cache.get(REMOTE, info));
+		assertNull(cache.get(REMOTE, null));
+	}
+
+	/**
+	 * Workflow, node and mountpoint relative uris depend on the workflow and are
+	 * not cached.
+	 */
+	@Test
+	public void testContextRelativeUrisAreNotCached() {
+		final ResolvedLocationCache cache = new ResolvedLocationCache();
+		for (final String uri : new String[] { "knime://knime.workflow/data/image.tif",
+				"knime://knime.node/image.tif", "knime://knime.mountpoint/data/image.tif" }) {
+			final URI u = URI.create(uri);
+			assertTrue(uri, ResolvedLocationCache.isContextRelative(u));
+			cache.put(u, null, new FileLocation(new File("/tmp/image.tif")));
+			assertNull(uri, cache.get(u, null));
+		}
+		assertEquals(0, cache.getHitCount());
+	}
+
+	/**
+	 * Uris of a named mountpoint resolve the same in every workflow.
+	 */
+	@Test
+	public void testNamedMountpointUrisAreCached() {
+		final URI uri = URI.create("knime://LOCAL/data/image.tif");
+		assertFalse(ResolvedLocationCache.isContextRelative(uri));
+		final ResolvedLocationCache cache = new ResolvedLocationCache();
+		final Location loc = new FileLocation(new File("/tmp/image.tif"));
+		cache.put(uri, null, loc);
+		assertSame(loc, cache.get(uri, null));
+	}
+}
@@ -0,0 +1,176 @@
+package org.knime.knip.io2;
+
+import io.scif.Format;
+import io.scif.FormatException;
+import io.scif.config.SCIFIOConfig;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.knime.core.node.NodeLogger;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.location.Location;
+
+/**
+ * Caches the result of the format detection by file extension and magic
+ * bytes. For a location with a known key only the previously matched
+ * {@link Format} is checked, the full scan over all registered formats is only
+ * performed if that check fails.
+ *
+ * @author Gabriel Einsdorf
+ */
+public class FormatDetectionCache {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(FormatDetectionCache.class);
+
+	/* Number of bytes at the start of a file that are part of the key */
+	private static final int MAGIC_LENGTH = 8;
+
+	private static final int MAX_ENTRIES = 1024;
+
+	/* Extensions that consist of two parts and identify a different format than their last part */
+	private static final Set<String> COMPOUND_EXTENSIONS = new HashSet<>(
+			Arrays.asList("ome.tif", "ome.tiff", "ome.btf", "ome.tf2", "ome.tf8", "ome.xml", "nii.gz"));
+
+	private final Map<String, Format> m_formats = new LinkedHashMap<String, Format>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Format> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private final AtomicLong m_hits = new AtomicLong();
+
+	private final AtomicLong m_misses = new AtomicLong();
+
+	/**
+	 * Determines the format of the given location.
+	 *
+	 * @param loc the location
+	 * @return the format of the location
+	 * @throws FormatException if no format supports the location
+	 */
+	public Format getFormat(final Location loc) throws FormatException {
+		final SCIFIOConfig config = new SCIFIOConfig().checkerSetOpen(true);
+		final String key = createKey(loc);
+
+		if (key != null) {
+			final Format cached;
+			synchronized (m_formats) {
+				cached = m_formats.get(key);
+			}
+			if (cached != null && cached.isEnabled() && cached.createChecker().isFormat(loc, config)) {
+				m_hits.incrementAndGet();
+				return cached;
+			}
+		}
+
+		m_misses.incrementAndGet();
+		final Format format = IO2Gateway.scifio().format().getFormat(loc, config);
+		if (key != null) {
+			synchronized (m_formats) {
+				m_formats.put(key, format);
+			}
+		}
+		return format;
+	}
+
+	/**
+	 * @return the number of detections that were answered by the cache
+	 */
+	public long getHitCount() {
+		return m_hits.get();
+	}
+
+	/**
+	 * @return the number of detections that required a scan over all formats
+	 */
+	public long getMissCount() {
+		return m_misses.get();
+	}
+
+	/**
+	 * Removes all cached formats and resets the counters.
+	 */
+	public void clear() {
+		synchronized (m_formats) {
+			m_formats.clear();
+		}
+		m_hits.set(0);
+		m_misses.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "Format detection cache: " + getHitCount() + " hits, " + getMissCount() + " misses";
+	}
+
+	/*
+	 * Creates the key of a location from its extension and the first bytes of its
+	 * content, returns null if the content can't be read.
+	 */
+	private static String createKey(final Location loc) {
+		final String extension = getExtension(loc.getName());
+
+		final byte[] magic = new byte[MAGIC_LENGTH];
+		int read = 0;
+		try (final DataHandle<Location> handle = IO2Gateway.handles().create(loc)) {
+			if (handle == null || !handle.exists()) {
+				return null;
+			}
+			while (read < magic.length) {
+				final int n = handle.read(magic, read, magic.length - read);
+				if (n <= 0) {
+					break;
+				}
+				read += n;
+			}
+		} catch (final IOException e) {
+			LOGGER.debug("Could not read magic bytes of " + loc, e);
+			return null;
+		}
+
+		final StringBuilder key = new StringBuilder(extension).append(':');
+		for (int i = 0; i < read; i++) {
+			key.append(String.format("%02x", magic[i]));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Determines the extension of a file name that is used in the key. This is the
+	 * part after the last dot, or one of the known compound extensions such as
+	 * <i>ome.tif</i>, so that e.g. <i>img.v2.tif</i> and <i>img.tif</i> share a
+	 * key while <i>img.ome.tif</i> does not.
+	 *
+	 * @param name the file name, may be null
+	 * @return the lower case extension, or an empty string if there is none
+	 */
+	static String getExtension(final String name) {
+		if (name == null) {
+			return "";
+		}
+		final String lower = name.toLowerCase(Locale.ENGLISH);
+		final int last = lower.lastIndexOf('.');
+		if (last < 0) {
+			return "";
+		}
+		final int previous = lower.lastIndexOf('.', last - 1);
+		if (previous >= 0) {
+			final String compound = lower.substring(previous + 1);
+			if (COMPOUND_EXTENSIONS.contains(compound)) {
+				return compound;
+			}
+		}
+		return lower.substring(last + 1);
+	}
+}
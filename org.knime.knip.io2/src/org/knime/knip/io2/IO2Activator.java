@@ -0,0 +1,109 @@
+package org.knime.knip.io2;
+
+import io.scif.Format;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.knime.core.node.NodeLogger;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.scijava.io.location.FileLocation;
+
+/**
+ * Activator of the IO2 bundle. If the system property
+ * {@value #WARMUP_PROPERTY} is <code>true</code>, the SCIFIO context is
+ * created, all formats are instantiated and a small sample per common format is
+ * read on a background thread, so that the first image read by a node does not
+ * carry these costs.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class IO2Activator implements BundleActivator {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(IO2Activator.class);
+
+	/**
+	 * System property that enables the warm-up at bundle activation.
+	 */
+	public static final String WARMUP_PROPERTY = "knip.io2.warmup";
+
+	/* Samples embedded in the bundle that are read during warm-up */
+	private static final String[] SAMPLES = { "warmup/sample.tif", "warmup/sample.png", "warmup/sample.jpg" };
+
+	@Override
+	public void start(final BundleContext context) throws Exception {
+		if (Boolean.getBoolean(WARMUP_PROPERTY)) {
+			final Thread t = new Thread(IO2Activator::warmUp, "KNIP-IO2-Warmup");
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			t.start();
+		}
+	}
+
+	@Override
+	public void stop(final BundleContext context) throws Exception {
+		// nothing to do, the warm-up thread is a daemon
+	}
+
+	private static void warmUp() {
+		final long start = System.currentTimeMillis();
+		try {
+			int numFormats = 0;
+			for (final Format format : IO2Gateway.scifio().format().getAllFormats()) {
+				try {
+					format.createChecker();
+					format.createParser();
+					format.createReader();
+					numFormats++;
+				} catch (final Exception e) {
+					LOGGER.debug("Could not instantiate format " + format.getFormatName(), e);
+				}
+			}
+
+			final ScifioImgSource source = new ScifioImgSource();
+			final List<File> files = new ArrayList<>();
+			try {
+				for (final String sample : SAMPLES) {
+					readSample(source, sample, files);
+				}
+			} finally {
+				// the pooled readers keep the samples open until the source is closed
+				source.close();
+				for (final File file : files) {
+					if (!file.delete()) {
+						file.deleteOnExit();
+					}
+				}
+			}
+			LOGGER.info("Warmed up image reading (" + numFormats + " formats) in "
+					+ (System.currentTimeMillis() - start) + " ms");
+		} catch (final Throwable t) {
+			LOGGER.warn("Warm-up of image reading failed after " + (System.currentTimeMillis() - start) + " ms", t);
+		}
+	}
+
+	/*
+	 * Copies a sample to a temporary file, which is added to the files to delete,
+	 * and reads it.
+	 */
+	private static void readSample(final ScifioImgSource source, final String sample, final List<File> files) {
+		final String name = sample.substring(sample.lastIndexOf('/') + 1);
+		try (InputStream in = IO2Activator.class.getResourceAsStream(sample)) {
+			if (in == null) {
+				LOGGER.debug("Warm-up sample " + sample + " not found");
+				return;
+			}
+			final File file = File.createTempFile("knip-io2-", name);
+			files.add(file);
+			Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			source.getImg(new FileLocation(file), 0);
+		} catch (final Exception e) {
+			LOGGER.debug("Could not read warm-up sample " + sample, e);
+		}
+	}
+}
@@ -1,31 +1,58 @@
 package org.knime.knip.io2;
 
 import io.scif.SCIFIO;
+import io.scif.SCIFIOService;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.stream.Collectors;
 
 import net.imagej.ops.OpService;
 
+import org.knime.core.node.NodeLogger;
 import org.knime.knip.io2.extension.SciJavaPluginExtensionHandler;
 import org.knime.scijava.core.ResourceAwareClassLoader;
 import org.scijava.Context;
+import org.scijava.app.StatusService;
 import org.scijava.io.handle.DataHandleService;
 import org.scijava.io.location.LocationService;
+import org.scijava.log.LogLevel;
 import org.scijava.log.LogService;
 import org.scijava.plugin.DefaultPluginFinder;
 import org.scijava.plugin.Plugin;
 import org.scijava.plugin.PluginIndex;
 import org.scijava.plugin.PluginInfo;
 import org.scijava.service.Service;
+import org.scijava.service.ServiceHelper;
 
 public class IO2Gateway {
 
-	private static IO2Gateway m_instance;
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(IO2Gateway.class);
 
-	private static DataHandleService m_handles;
-	private static LocationService m_loc;
+	/**
+	 * System property, if <code>true</code> all discovered services are started
+	 * with the context instead of only the services needed to read images.
+	 */
+	public static final String FULL_CONTEXT_PROPERTY = "knip.io2.fullContext";
+
+	/* The services needed to read images, all others are started on first use */
+	private static final Collection<Class<? extends Service>> READER_SERVICES = Arrays.asList(
+			DataHandleService.class, LocationService.class, SCIFIOService.class, StatusService.class,
+			LogService.class);
+
+	/*
+	 * The lazily initialized fields are volatile and only assigned while holding
+	 * the class lock, i.e. they are never published partially constructed and
+	 * initialized at most once. After initialization no lock is taken.
+	 */
+	private static volatile IO2Gateway m_instance;
+
+	private static volatile DataHandleService m_handles;
+	private static volatile LocationService m_loc;
+	private static volatile SCIFIO m_scifio;
+
+	/* assigned by the constructor, published through m_instance */
 	private static Context m_context;
-	private static SCIFIO m_scifio;
 
 	private IO2Gateway() {
 		// set log level to warn to ignore plug-in loading log events
@@ -41,59 +68,108 @@ public class IO2Gateway {
 			final Plugin a = p.getClass().getAnnotation(Plugin.class);
 			return new PluginInfo<>(p.getClass().getName(), a.type(), a, p.getClass().getClassLoader());
 		}).collect(Collectors.toList()));
-		// create custom context with all collected plugins
-		m_context = new Context(pluginIndex);
+		final long start = System.currentTimeMillis();
+		if (Boolean.getBoolean(FULL_CONTEXT_PROPERTY)) {
+			// create custom context with all collected plugins
+			m_context = new Context(pluginIndex);
+		} else {
+			// only start the services needed to read images
+			m_context = new Context(READER_SERVICES, pluginIndex);
+		}
+		LOGGER.debug("Created SciJava context in " + (System.currentTimeMillis() - start) + " ms");
+
+		// SCIFIO reports recoverable parsing problems as warnings, they are
+		// suppressed once for all readers instead of around each read
+		m_context.getService(LogService.class).setLevel("io.scif", LogLevel.ERROR);
 	}
 
 	/**
 	 * @return singleton instance of {@link IO2Gateway}
 	 */
-	public static synchronized IO2Gateway getInstance() {
-		if (m_instance == null) {
-			m_instance = new IO2Gateway();
+	public static IO2Gateway getInstance() {
+		IO2Gateway instance = m_instance;
+		if (instance == null) {
+			synchronized (IO2Gateway.class) {
+				instance = m_instance;
+				if (instance == null) {
+					instance = new IO2Gateway();
+					m_instance = instance;
+				}
+			}
 		}
-		return m_instance;
+		return instance;
 	}
 
 	/**
 	 * @return singleton instance of {@link DataHandleService}
 	 */
 	public static DataHandleService handles() {
-		if (m_handles == null) {
-			getInstance();
-			m_handles = IO2Gateway.m_context.getService(DataHandleService.class);
+		DataHandleService handles = m_handles;
+		if (handles == null) {
+			synchronized (IO2Gateway.class) {
+				handles = m_handles;
+				if (handles == null) {
+					handles = context().getService(DataHandleService.class);
+					m_handles = handles;
+				}
+			}
 		}
-		return m_handles;
+		return handles;
 	}
 
 	public static LocationService locations() {
-		if (m_loc == null) {
-			getInstance();
-			m_loc = IO2Gateway.m_context.getService(LocationService.class);
+		LocationService loc = m_loc;
+		if (loc == null) {
+			synchronized (IO2Gateway.class) {
+				loc = m_loc;
+				if (loc == null) {
+					loc = context().getService(LocationService.class);
+					m_loc = loc;
+				}
+			}
 		}
-		return m_loc;
+		return loc;
 	}
 
 	public static SCIFIO scifio() {
-		if (m_scifio == null) {
-			getInstance();
-			m_scifio = new SCIFIO(IO2Gateway.m_context);
+		SCIFIO scifio = m_scifio;
+		if (scifio == null) {
+			synchronized (IO2Gateway.class) {
+				scifio = m_scifio;
+				if (scifio == null) {
+					scifio = new SCIFIO(context());
+					m_scifio = scifio;
+				}
+			}
 		}
-		return m_scifio;
+		return scifio;
 	}
 
+	/**
+	 * Returns the service of the given class, services that have not been
+	 * started with the context are started on first use.
+	 *
+	 * @param c the service class
+	 * @return the service
+	 */
 	public static <S extends Service> S getService(final Class<S> c) {
 		getInstance();
-		return IO2Gateway.m_context.getService(c);
+		final S service = IO2Gateway.m_context.getService(c);
+		if (service != null) {
+			return service;
+		}
+		synchronized (IO2Gateway.class) {
+			return new ServiceHelper(IO2Gateway.m_context).loadService(c);
+		}
 	}
 
 	public static Context context() {
+		// reading m_instance makes the context visible
 		getInstance();
 		return IO2Gateway.m_context;
 	}
 
 	public static OpService ops() {
-		getInstance();
-		return IO2Gateway.m_context.getService(OpService.class);
+		return getService(OpService.class);
 	}
 }
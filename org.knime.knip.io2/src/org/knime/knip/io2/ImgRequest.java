@@ -0,0 +1,86 @@
+package org.knime.knip.io2;
+
+import net.imagej.axis.TypedAxis;
+import net.imglib2.Interval;
+import net.imglib2.util.Pair;
+
+import org.scijava.io.location.Location;
+
+/**
+ * A request to read one image series, see {@link ImgSource#getImgs}.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public final class ImgRequest {
+
+	private final Location m_location;
+
+	private final int m_series;
+
+	private final Pair<TypedAxis, long[]>[] m_axisSelectionConstraints;
+
+	private final Interval m_xyCrop;
+
+	/**
+	 * @param location                 location of the exact image source
+	 * @param series                   image number in a dataset with multiple
+	 *                                 images
+	 * @param axisSelectionConstraints the selected indices of the axes, can be
+	 *                                 <code>null</code>
+	 */
+	public ImgRequest(final Location location, final int series,
+			final Pair<TypedAxis, long[]>[] axisSelectionConstraints) {
+		this(location, series, axisSelectionConstraints, null);
+	}
+
+	/**
+	 * @param location                 location of the exact image source
+	 * @param series                   image number in a dataset with multiple
+	 *                                 images
+	 * @param axisSelectionConstraints the selected indices of the axes, can be
+	 *                                 <code>null</code>
+	 * @param xyCrop                   the region of the X and Y axes to read, can
+	 *                                 be <code>null</code>
+	 */
+	public ImgRequest(final Location location, final int series,
+			final Pair<TypedAxis, long[]>[] axisSelectionConstraints, final Interval xyCrop) {
+		m_location = location;
+		m_series = series;
+		m_axisSelectionConstraints = axisSelectionConstraints;
+		m_xyCrop = xyCrop;
+	}
+
+	/**
+	 * @return the location of the image
+	 */
+	public Location getLocation() {
+		return m_location;
+	}
+
+	/**
+	 * @return the series of the image
+	 */
+	public int getSeries() {
+		return m_series;
+	}
+
+	/**
+	 * @return the selected indices of the axes, can be <code>null</code>
+	 */
+	public Pair<TypedAxis, long[]>[] getAxisSelectionConstraints() {
+		return m_axisSelectionConstraints;
+	}
+
+	/**
+	 * @return the region of the X and Y axes to read, <code>null</code> to read
+	 *         complete planes
+	 */
+	public Interval getXYCrop() {
+		return m_xyCrop;
+	}
+
+	@Override
+	public String toString() {
+		return m_location + " (series " + m_series + ")";
+	}
+}
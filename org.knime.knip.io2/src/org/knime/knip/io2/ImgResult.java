@@ -0,0 +1,67 @@
+package org.knime.knip.io2;
+
+import java.util.Optional;
+
+import net.imagej.ImgPlus;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * The result of an {@link ImgRequest}, either the image or the exception that
+ * occurred while reading it.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+@SuppressWarnings("rawtypes")
+public final class ImgResult {
+
+	private final ImgRequest m_request;
+
+	private final ImgPlus<RealType> m_img;
+
+	private final Throwable m_error;
+
+	private ImgResult(final ImgRequest request, final ImgPlus<RealType> img, final Throwable error) {
+		m_request = request;
+		m_img = img;
+		m_error = error;
+	}
+
+	/**
+	 * @param request the request
+	 * @param img     the image that was read
+	 * @return a successful result
+	 */
+	public static ImgResult success(final ImgRequest request, final ImgPlus<RealType> img) {
+		return new ImgResult(request, img, null);
+	}
+
+	/**
+	 * @param request the request
+	 * @param error   the exception that occurred
+	 * @return a failed result
+	 */
+	public static ImgResult failure(final ImgRequest request, final Throwable error) {
+		return new ImgResult(request, null, error);
+	}
+
+	/**
+	 * @return the request this is the result of
+	 */
+	public ImgRequest getRequest() {
+		return m_request;
+	}
+
+	/**
+	 * @return the image or <code>null</code> if it could not be read
+	 */
+	public ImgPlus<RealType> getImg() {
+		return m_img;
+	}
+
+	/**
+	 * @return the exception that occurred while reading the image, if any
+	 */
+	public Optional<Throwable> getError() {
+		return Optional.ofNullable(m_error);
+	}
+}
@@ -51,13 +51,23 @@ package org.knime.knip.io2;
 import io.scif.FormatException;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import net.imagej.ImgPlus;
 import net.imagej.axis.CalibratedAxis;
 import net.imagej.axis.TypedAxis;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.util.Pair;
+import net.imglib2.view.Views;
 
 import org.scijava.io.location.Location;
 
@@ -125,6 +135,182 @@ public interface ImgSource {
 	public ImgPlus<RealType> getImg(final Location location, final int currentSeries,
 			final Pair<TypedAxis, long[]>[] axisSelectionConstraints) throws Exception;
 
+	/**
+	 * Retrieves the sub image at the given interval, cropped to a region of the
+	 * X and Y axes. Only the part of each plane inside the crop is read from the
+	 * source, e.g. only the intersecting strips or tiles of a TIFF file. The crop
+	 * replaces the selections of the X and Y axes and is clipped to the extent of
+	 * the image, a crop that does not overlap the image is rejected with an
+	 * {@link IllegalArgumentException}.
+	 *
+	 * @param location                 location of the exact image source
+	 * @param currentSeries            image number in a dataset with multiple
+	 *                                 images
+	 * @param axisSelectionConstraints allows to specify selected indices for the
+	 *                                 axes, can be <code>null</code>
+	 * @param xyCrop                   a two dimensional region of the X and Y
+	 *                                 axes to read, can be <code>null</code>
+	 * @return the cropped image
+	 * @throws Exception the appropriate exception, if the image can't be retrieved
+	 */
+	@SuppressWarnings("rawtypes")
+	public ImgPlus<RealType> getImg(final Location location, final int currentSeries,
+			final Pair<TypedAxis, long[]>[] axisSelectionConstraints, final Interval xyCrop) throws Exception;
+
+	/**
+	 * Asynchronous variant of {@link #getImg(Location, int)}.
+	 *
+	 * @param location      location of the exact image source
+	 * @param currentSeries image number in a dataset with multiple images
+	 * @return a future that completes with the complete image, or exceptionally
+	 *         with the exception thrown by {@link #getImg(Location, int)}
+	 */
+	@SuppressWarnings("rawtypes")
+	public default CompletableFuture<ImgPlus<RealType>> getImgAsync(final Location location,
+			final int currentSeries) {
+		return getImgAsync(location, currentSeries, null);
+	}
+
+	/**
+	 * Asynchronous variant of {@link #getImg(Location, int, Pair[])}, the image
+	 * is read on the executor of {@link #getAsyncExecutor()}.
+	 *
+	 * @param location                 location of the exact image source
+	 * @param currentSeries            image number in a dataset with multiple
+	 *                                 images
+	 * @param axisSelectionConstraints allows to specify selected indices for the
+	 *                                 axes, can be <code>null</code>
+	 * @return a future that completes with the image, or exceptionally with the
+	 *         exception thrown by {@link #getImg(Location, int, Pair[])}
+	 */
+	@SuppressWarnings("rawtypes")
+	public default CompletableFuture<ImgPlus<RealType>> getImgAsync(final Location location,
+			final int currentSeries, final Pair<TypedAxis, long[]>[] axisSelectionConstraints) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return getImg(location, currentSeries, axisSelectionConstraints);
+			} catch (final Exception e) {
+				throw new CompletionException(e);
+			}
+		}, getAsyncExecutor());
+	}
+
+	/**
+	 * Asynchronous variant of {@link #getImg(Location, int, Pair[], Interval)}.
+	 *
+	 * @param location                 location of the exact image source
+	 * @param currentSeries            image number in a dataset with multiple
+	 *                                 images
+	 * @param axisSelectionConstraints allows to specify selected indices for the
+	 *                                 axes, can be <code>null</code>
+	 * @param xyCrop                   the region of the X and Y axes to read, can
+	 *                                 be <code>null</code>
+	 * @return a future that completes with the cropped image, or exceptionally
+	 *         with the exception thrown by
+	 *         {@link #getImg(Location, int, Pair[], Interval)}
+	 */
+	@SuppressWarnings("rawtypes")
+	public default CompletableFuture<ImgPlus<RealType>> getImgAsync(final Location location,
+			final int currentSeries, final Pair<TypedAxis, long[]>[] axisSelectionConstraints,
+			final Interval xyCrop) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return getImg(location, currentSeries, axisSelectionConstraints, xyCrop);
+			} catch (final Exception e) {
+				throw new CompletionException(e);
+			}
+		}, getAsyncExecutor());
+	}
+
+	/**
+	 * Reads several images at once. Implementations may group the requests, e.g.
+	 * by file, to open and parse each file only once, hence the results are not
+	 * necessarily returned in the order of the requests. A failed request does
+	 * not affect the others, its exception is part of its result. The images may
+	 * be read while the stream is consumed, a stream that is not consumed
+	 * completely must be closed.
+	 *
+	 * @param requests the images to read
+	 * @return a stream with one result per request
+	 */
+	public default Stream<ImgResult> getImgs(final List<ImgRequest> requests) {
+		return requests.stream().map(request -> {
+			try {
+				return ImgResult.success(request, getImg(request.getLocation(), request.getSeries(),
+						request.getAxisSelectionConstraints(), request.getXYCrop()));
+			} catch (final Exception e) {
+				return ImgResult.failure(request, e);
+			}
+		});
+	}
+
+	/**
+	 * Returns the planes of an image one at a time. The planes are read into a
+	 * buffer that is re-used, see {@link PlaneSpliterator}. The default
+	 * implementation reads the complete image and treats the first two axes as
+	 * planar, implementations should read the planes on demand.
+	 *
+	 * @param location                 location of the exact image source
+	 * @param currentSeries            image number in a dataset with multiple
+	 *                                 images
+	 * @param axisSelectionConstraints allows to specify selected indices for the
+	 *                                 axes, can be <code>null</code>
+	 * @return a spliterator over the planes in the flat order of the non-planar
+	 *         axes
+	 * @throws Exception if the image can't be opened
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public default Spliterator<PositionedPlane<RealType>> getPlanes(final Location location,
+			final int currentSeries, final Pair<TypedAxis, long[]>[] axisSelectionConstraints) throws Exception {
+		final ImgPlus<RealType> img = getImg(location, currentSeries, axisSelectionConstraints);
+		final long[] dims = new long[img.numDimensions()];
+		img.dimensions(dims);
+		final int planarAxisCount = Math.min(2, dims.length);
+		final long[] planeDims = Arrays.copyOf(dims, planarAxisCount);
+		final long[] nonPlanarDims = Arrays.copyOfRange(dims, planarAxisCount, dims.length);
+
+		return new PlaneSpliterator<RealType>((position, buffer) -> {
+			final long[] min = new long[dims.length];
+			final long[] max = new long[dims.length];
+			for (int d = 0; d < dims.length; d++) {
+				min[d] = d < planarAxisCount ? 0 : position[d - planarAxisCount];
+				max[d] = d < planarAxisCount ? dims[d] - 1 : position[d - planarAxisCount];
+			}
+			final Cursor<RealType> src = Views.flatIterable(Views.interval(img, min, max)).cursor();
+			final Cursor<RealType> dst = Views.flatIterable(buffer).cursor();
+			while (src.hasNext()) {
+				dst.next().setReal(src.next().getRealDouble());
+			}
+		}, () -> img.factory().create(planeDims), nonPlanarDims);
+	}
+
+	/**
+	 * Streams the planes of an image, see
+	 * {@link #getPlanes(Location, int, Pair[])}.
+	 *
+	 * @param location                 location of the exact image source
+	 * @param currentSeries            image number in a dataset with multiple
+	 *                                 images
+	 * @param axisSelectionConstraints allows to specify selected indices for the
+	 *                                 axes, can be <code>null</code>
+	 * @param parallel                 whether the stream should be parallel
+	 * @return a stream of the planes
+	 * @throws Exception if the image can't be opened
+	 */
+	@SuppressWarnings("rawtypes")
+	public default Stream<PositionedPlane<RealType>> streamPlanes(final Location location,
+			final int currentSeries, final Pair<TypedAxis, long[]>[] axisSelectionConstraints,
+			final boolean parallel) throws Exception {
+		return StreamSupport.stream(getPlanes(location, currentSeries, axisSelectionConstraints), parallel);
+	}
+
+	/**
+	 * @return the executor the asynchronous methods run on
+	 */
+	public default Executor getAsyncExecutor() {
+		return ImgSourceExecutors.defaultExecutor();
+	}
+
 	/**
 	 *
 	 * @param loc           description of the exact image source (URL, ...)
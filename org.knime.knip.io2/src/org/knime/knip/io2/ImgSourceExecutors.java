@@ -0,0 +1,56 @@
+package org.knime.knip.io2;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.knime.core.node.NodeLogger;
+
+/**
+ * Provides the default {@link Executor} of the asynchronous methods of
+ * {@link ImgSource}. On Java 21 or newer each task runs on its own virtual
+ * thread, otherwise on a cached pool of daemon threads.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public final class ImgSourceExecutors {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(ImgSourceExecutors.class);
+
+	private ImgSourceExecutors() {
+		// utility class
+	}
+
+	/**
+	 * @return the executor shared by all image sources
+	 */
+	public static Executor defaultExecutor() {
+		return Holder.EXECUTOR;
+	}
+
+	/* Creates the executor on first use */
+	private static final class Holder {
+		private static final ExecutorService EXECUTOR = createExecutor();
+	}
+
+	private static ExecutorService createExecutor() {
+		try {
+			// the bundle targets Java 8, hence the reflective lookup
+			final Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			final ExecutorService executor = (ExecutorService) m.invoke(null);
+			LOGGER.debug("Using virtual threads for asynchronous image reading");
+			return executor;
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			final AtomicInteger count = new AtomicInteger();
+			final ThreadFactory factory = r -> {
+				final Thread t = new Thread(r, "KNIP-IO2-Async-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			};
+			return Executors.newCachedThreadPool(factory);
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package org.knime.knip.io2;
+
+import io.scif.ImageMetadata;
+import io.scif.Metadata;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imagej.axis.CalibratedAxis;
+
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * A bounded cache of the metadata of image files, keyed by the location, its
+ * last modification time and whether group files were read. Only a small snapshot of the metadata (axes,
+ * dimensions and pixel type of each series) is kept, the size of the cache is
+ * bounded by an estimate of the heap size of the snapshots in bytes.
+ *
+ * @author Gabriel Einsdorf
+ */
+public class MetadataCache {
+
+	/* Default maximum weight, i.e. estimated size of the cached snapshots in bytes */
+	private static final long DEFAULT_MAX_WEIGHT = 64L << 20;
+
+	/* Estimated size of an object header and a reference in bytes */
+	private static final long OBJECT_BYTES = 16;
+
+	private static final long REFERENCE_BYTES = 8;
+
+	/* Estimated size of the snapshot of a file and a series without their strings, lists and arrays */
+	private static final long ENTRY_BYTES = 4 * OBJECT_BYTES;
+
+	private static final long SERIES_BYTES = 4 * OBJECT_BYTES;
+
+	/* Estimated size of a calibrated axis without its strings, including its type and calibration */
+	private static final long AXIS_BYTES = 6 * OBJECT_BYTES;
+
+	private final Map<Key, Entry> m_entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final long m_maxWeight;
+
+	private long m_weight;
+
+	private final AtomicLong m_hits = new AtomicLong();
+
+	private final AtomicLong m_misses = new AtomicLong();
+
+	/**
+	 * Creates a cache with the default size.
+	 */
+	public MetadataCache() {
+		this(DEFAULT_MAX_WEIGHT);
+	}
+
+	/**
+	 * @param maxWeight the maximum estimated size of the cached snapshots in bytes
+	 */
+	public MetadataCache(final long maxWeight) {
+		m_maxWeight = maxWeight;
+	}
+
+	/**
+	 * @param loc        the location
+	 * @param groupFiles whether the metadata was parsed with grouped files
+	 * @return the cached metadata of the location or <code>null</code> if the
+	 *         location is not cached or has been modified since.
+	 */
+	Entry get(final Location loc, final boolean groupFiles) {
+		final Key key = Key.of(loc, groupFiles);
+		if (key == null) {
+			m_misses.incrementAndGet();
+			return null;
+		}
+		final Entry entry;
+		synchronized (m_entries) {
+			entry = m_entries.get(key);
+		}
+		if (entry == null) {
+			m_misses.incrementAndGet();
+		} else {
+			m_hits.incrementAndGet();
+		}
+		return entry;
+	}
+
+	/**
+	 * Stores a snapshot of the given metadata.
+	 *
+	 * @param loc        the location the metadata was parsed from
+	 * @param groupFiles whether the metadata was parsed with grouped files
+	 * @param meta       the parsed metadata
+	 * @return the snapshot
+	 */
+	Entry put(final Location loc, final boolean groupFiles, final Metadata meta) {
+		final Entry entry = new Entry(meta);
+		final Key key = Key.of(loc, groupFiles);
+		if (key == null || entry.m_weight > m_maxWeight) {
+			return entry;
+		}
+
+		synchronized (m_entries) {
+			final Entry old = m_entries.put(key, entry);
+			if (old != null) {
+				m_weight -= old.m_weight;
+			}
+			m_weight += entry.m_weight;
+
+			// evict the least recently used entries
+			final Iterator<Entry> it = m_entries.values().iterator();
+			while (m_weight > m_maxWeight && it.hasNext()) {
+				m_weight -= it.next().m_weight;
+				it.remove();
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * @return the number of lookups that were answered by the cache
+	 */
+	public long getHitCount() {
+		return m_hits.get();
+	}
+
+	/**
+	 * @return the number of lookups that required parsing the file
+	 */
+	public long getMissCount() {
+		return m_misses.get();
+	}
+
+	/*
+	 * The estimated size of the cached snapshots in bytes.
+	 */
+	long getWeight() {
+		synchronized (m_entries) {
+			return m_weight;
+		}
+	}
+
+	/**
+	 * Removes all entries and resets the counters.
+	 */
+	public void clear() {
+		synchronized (m_entries) {
+			m_entries.clear();
+			m_weight = 0;
+		}
+		m_hits.set(0);
+		m_misses.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "Metadata cache: " + getHitCount() + " hits, " + getMissCount() + " misses";
+	}
+
+	/**
+	 * Immutable snapshot of the metadata of a file.
+	 */
+	static final class Entry {
+
+		private final String m_datasetName;
+
+		private final List<Series> m_series;
+
+		private final long m_weight;
+
+		private Entry(final Metadata meta) {
+			m_datasetName = meta.getDatasetName();
+			final List<Series> series = new ArrayList<>(meta.getImageCount());
+			long weight = ENTRY_BYTES + stringBytes(m_datasetName);
+			for (int i = 0; i < meta.getImageCount(); i++) {
+				final Series s = new Series(meta.get(i));
+				weight += REFERENCE_BYTES + s.estimateBytes();
+				series.add(s);
+			}
+			m_series = Collections.unmodifiableList(series);
+			m_weight = weight;
+		}
+
+		String getDatasetName() {
+			return m_datasetName;
+		}
+
+		int getSeriesCount() {
+			return m_series.size();
+		}
+
+		Series get(final int series) {
+			return m_series.get(series);
+		}
+	}
+
+	/**
+	 * Immutable snapshot of the metadata of a single series.
+	 */
+	static final class Series {
+
+		private final List<CalibratedAxis> m_axes;
+
+		private final long[] m_lengths;
+
+		private final int m_pixelType;
+
+		private Series(final ImageMetadata meta) {
+			final List<CalibratedAxis> axes = new ArrayList<>();
+			for (final CalibratedAxis axis : meta.getAxes()) {
+				axes.add(axis.copy());
+			}
+			m_axes = Collections.unmodifiableList(axes);
+			m_lengths = meta.getAxesLengths().clone();
+			m_pixelType = meta.getPixelType();
+		}
+
+		/*
+		 * Copies of the axes, callers may modify the calibration of the returned axes.
+		 */
+		List<CalibratedAxis> getAxes() {
+			final List<CalibratedAxis> axes = new ArrayList<>(m_axes.size());
+			for (final CalibratedAxis axis : m_axes) {
+				axes.add(axis.copy());
+			}
+			return axes;
+		}
+
+		long[] getAxesLengths() {
+			return m_lengths.clone();
+		}
+
+		int getPixelType() {
+			return m_pixelType;
+		}
+
+		/*
+		 * Estimates the heap size of this snapshot from its axes and lengths.
+		 */
+		private long estimateBytes() {
+			long bytes = SERIES_BYTES + REFERENCE_BYTES * m_axes.size() + Long.BYTES * m_lengths.length;
+			for (final CalibratedAxis axis : m_axes) {
+				bytes += AXIS_BYTES + stringBytes(axis.type().getLabel()) + stringBytes(axis.unit());
+			}
+			return bytes;
+		}
+	}
+
+	/*
+	 * Estimated heap size of a string, 0 for null.
+	 */
+	private static long stringBytes(final String s) {
+		return s == null ? 0 : 3 * OBJECT_BYTES + 2L * s.length();
+	}
+
+	/*
+	 * Key of a cache entry, only locations with a known modification time can be
+	 * cached.
+	 */
+	private static final class Key {
+
+		private final Location m_loc;
+
+		private final long m_lastModified;
+
+		private final boolean m_groupFiles;
+
+		private Key(final Location loc, final long lastModified, final boolean groupFiles) {
+			m_loc = loc;
+			m_lastModified = lastModified;
+			m_groupFiles = groupFiles;
+		}
+
+		static Key of(final Location loc, final boolean groupFiles) {
+			if (loc instanceof FileLocation) {
+				final File file = ((FileLocation) loc).getFile();
+				final long lastModified = file.lastModified();
+				// 0 if the file does not exist or an I/O error occurred
+				return lastModified == 0 ? null : new Key(loc, lastModified, groupFiles);
+			}
+			return null;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return m_lastModified == other.m_lastModified && m_groupFiles == other.m_groupFiles
+					&& m_loc.equals(other.m_loc);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(m_loc, m_lastModified, m_groupFiles);
+		}
+	}
+}
@@ -0,0 +1,369 @@
+package org.knime.knip.io2;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import net.imagej.ImgPlus;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.ByteAccess;
+import net.imglib2.img.basictypeaccess.DoubleAccess;
+import net.imglib2.img.basictypeaccess.FloatAccess;
+import net.imglib2.img.basictypeaccess.IntAccess;
+import net.imglib2.img.basictypeaccess.ShortAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.knime.core.node.NodeLogger;
+
+/**
+ * A {@link ImgFactory} that creates array images whose pixels are stored in
+ * direct {@link ByteBuffer}s outside of the Java heap, large images then
+ * neither count against the heap nor have to be moved by the garbage
+ * collector. The native memory is released when the image becomes unreachable
+ * or, deterministically, with {@link #free(Img)}. Types without a primitive
+ * integer or floating point storage are created on the heap.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ * @param <T> the pixel type
+ */
+public class OffHeapImgFactory<T extends NativeType<T>> extends ImgFactory<T> {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(OffHeapImgFactory.class);
+
+	/**
+	 * Creates a factory without a type, use {@link #imgFactory(Object)} to get a
+	 * factory that can create images.
+	 */
+	public OffHeapImgFactory() {
+		super();
+	}
+
+	/**
+	 * @param type the pixel type
+	 */
+	public OffHeapImgFactory(final T type) {
+		super(type);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	public Img<T> create(final long... dims) {
+		final T type = type();
+		final long numPixels = numPixels(dims);
+		if (type instanceof UnsignedByteType) {
+			return (Img) ArrayImgs.unsignedBytes(new DirectByteAccess(allocate(numPixels, 1)), dims);
+		} else if (type instanceof ByteType) {
+			return (Img) ArrayImgs.bytes(new DirectByteAccess(allocate(numPixels, 1)), dims);
+		} else if (type instanceof UnsignedShortType) {
+			return (Img) ArrayImgs.unsignedShorts(new DirectShortAccess(allocate(numPixels, 2)), dims);
+		} else if (type instanceof ShortType) {
+			return (Img) ArrayImgs.shorts(new DirectShortAccess(allocate(numPixels, 2)), dims);
+		} else if (type instanceof UnsignedIntType) {
+			return (Img) ArrayImgs.unsignedInts(new DirectIntAccess(allocate(numPixels, 4)), dims);
+		} else if (type instanceof IntType) {
+			return (Img) ArrayImgs.ints(new DirectIntAccess(allocate(numPixels, 4)), dims);
+		} else if (type instanceof FloatType) {
+			return (Img) ArrayImgs.floats(new DirectFloatAccess(allocate(numPixels, 4)), dims);
+		} else if (type instanceof DoubleType) {
+			return (Img) ArrayImgs.doubles(new DirectDoubleAccess(allocate(numPixels, 8)), dims);
+		}
+		return new ArrayImgFactory<>(type).create(dims);
+	}
+
+	/**
+	 * @deprecated use {@link #imgFactory(Object)} and {@link #create(long...)}
+	 */
+	@Deprecated
+	public Img<T> create(final long[] dims, final T type) {
+		return new OffHeapImgFactory<>(type).create(dims);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public <S> ImgFactory<S> imgFactory(final S type) {
+		return new OffHeapImgFactory((NativeType) type);
+	}
+
+	/**
+	 * Releases the native memory of an image created by this factory, the image
+	 * must not be used afterwards. Other images are left to the garbage
+	 * collector.
+	 *
+	 * @param img the image or an {@link ImgPlus} of it
+	 * @return whether native memory was released
+	 */
+	public static boolean free(final Img<?> img) {
+		final Object access = access(img);
+		return access instanceof DirectAccess && ((DirectAccess) access).free();
+	}
+
+	/**
+	 * @param img an image or an {@link ImgPlus} of it
+	 * @return whether the pixels of the image are stored off-heap by this factory
+	 */
+	public static boolean isOffHeap(final Img<?> img) {
+		return access(img) instanceof DirectAccess;
+	}
+
+	private static Object access(final Img<?> img) {
+		Img<?> inner = img;
+		while (inner instanceof ImgPlus) {
+			inner = ((ImgPlus<?>) inner).getImg();
+		}
+		return inner instanceof ArrayImg ? ((ArrayImg<?, ?>) inner).update(null) : null;
+	}
+
+	/**
+	 * @param access the storage of an image
+	 * @return the typed buffer of an off-heap storage, <code>null</code> for other
+	 *         storages
+	 */
+	static Buffer buffer(final Object access) {
+		return access instanceof DirectAccess ? ((DirectAccess) access).buffer() : null;
+	}
+
+	private static long numPixels(final long[] dims) {
+		long numPixels = 1;
+		for (final long d : dims) {
+			numPixels *= d;
+		}
+		return numPixels;
+	}
+
+	private static ByteBuffer allocate(final long numPixels, final int bytesPerPixel) {
+		if (numPixels * bytesPerPixel > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(
+					"Image too large for an off-heap array image, use the cell image factory instead");
+		}
+		return ByteBuffer.allocateDirect((int) (numPixels * bytesPerPixel)).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Releases the memory of a direct or mapped buffer with its cleaner:
+	 * Unsafe.invokeCleaner on Java 9+, DirectBuffer.cleaner().clean() on Java 8.
+	 * The buffer must not be used afterwards.
+	 *
+	 * @param buffer a direct or mapped buffer
+	 * @return whether the memory was released
+	 */
+	public static boolean release(final ByteBuffer buffer) {
+		try {
+			final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return true;
+		} catch (final NoSuchMethodException e) {
+			// Java 8
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			LOGGER.debug("Could not release off-heap image memory", e);
+			return false;
+		}
+		try {
+			final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			final Object cleaner = cleanerMethod.invoke(buffer);
+			cleaner.getClass().getMethod("clean").invoke(cleaner);
+			return true;
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			LOGGER.debug("Could not release off-heap image memory", e);
+			return false;
+		}
+	}
+
+	/*
+	 * Storage backed by a direct buffer, after it was freed every access fails
+	 * with a NullPointerException instead of reading released memory.
+	 */
+	private abstract static class DirectAccess {
+
+		private ByteBuffer m_bytes;
+
+		DirectAccess(final ByteBuffer bytes) {
+			m_bytes = bytes;
+		}
+
+		abstract Buffer buffer();
+
+		abstract void clear();
+
+		synchronized boolean free() {
+			if (m_bytes == null) {
+				return false;
+			}
+			final ByteBuffer bytes = m_bytes;
+			m_bytes = null;
+			clear();
+			return release(bytes);
+		}
+	}
+
+	private static final class DirectByteAccess extends DirectAccess implements ByteAccess {
+
+		private ByteBuffer m_data;
+
+		DirectByteAccess(final ByteBuffer bytes) {
+			super(bytes);
+			m_data = bytes;
+		}
+
+		@Override
+		public byte getValue(final int index) {
+			return m_data.get(index);
+		}
+
+		@Override
+		public void setValue(final int index, final byte value) {
+			m_data.put(index, value);
+		}
+
+		@Override
+		Buffer buffer() {
+			return m_data;
+		}
+
+		@Override
+		void clear() {
+			m_data = null;
+		}
+	}
+
+	private static final class DirectShortAccess extends DirectAccess implements ShortAccess {
+
+		private ShortBuffer m_data;
+
+		DirectShortAccess(final ByteBuffer bytes) {
+			super(bytes);
+			m_data = bytes.asShortBuffer();
+		}
+
+		@Override
+		public short getValue(final int index) {
+			return m_data.get(index);
+		}
+
+		@Override
+		public void setValue(final int index, final short value) {
+			m_data.put(index, value);
+		}
+
+		@Override
+		Buffer buffer() {
+			return m_data;
+		}
+
+		@Override
+		void clear() {
+			m_data = null;
+		}
+	}
+
+	private static final class DirectIntAccess extends DirectAccess implements IntAccess {
+
+		private IntBuffer m_data;
+
+		DirectIntAccess(final ByteBuffer bytes) {
+			super(bytes);
+			m_data = bytes.asIntBuffer();
+		}
+
+		@Override
+		public int getValue(final int index) {
+			return m_data.get(index);
+		}
+
+		@Override
+		public void setValue(final int index, final int value) {
+			m_data.put(index, value);
+		}
+
+		@Override
+		Buffer buffer() {
+			return m_data;
+		}
+
+		@Override
+		void clear() {
+			m_data = null;
+		}
+	}
+
+	private static final class DirectFloatAccess extends DirectAccess implements FloatAccess {
+
+		private FloatBuffer m_data;
+
+		DirectFloatAccess(final ByteBuffer bytes) {
+			super(bytes);
+			m_data = bytes.asFloatBuffer();
+		}
+
+		@Override
+		public float getValue(final int index) {
+			return m_data.get(index);
+		}
+
+		@Override
+		public void setValue(final int index, final float value) {
+			m_data.put(index, value);
+		}
+
+		@Override
+		Buffer buffer() {
+			return m_data;
+		}
+
+		@Override
+		void clear() {
+			m_data = null;
+		}
+	}
+
+	private static final class DirectDoubleAccess extends DirectAccess implements DoubleAccess {
+
+		private DoubleBuffer m_data;
+
+		DirectDoubleAccess(final ByteBuffer bytes) {
+			super(bytes);
+			m_data = bytes.asDoubleBuffer();
+		}
+
+		@Override
+		public double getValue(final int index) {
+			return m_data.get(index);
+		}
+
+		@Override
+		public void setValue(final int index, final double value) {
+			m_data.put(index, value);
+		}
+
+		@Override
+		Buffer buffer() {
+			return m_data;
+		}
+
+		@Override
+		void clear() {
+			m_data = null;
+		}
+	}
+}
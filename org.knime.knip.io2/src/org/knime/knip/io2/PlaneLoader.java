@@ -0,0 +1,397 @@
+package org.knime.knip.io2;
+
+import io.scif.ImageMetadata;
+import io.scif.Plane;
+import io.scif.img.ImageRegion;
+import io.scif.img.ImgUtilityService;
+import io.scif.img.Range;
+import io.scif.util.FormatTools;
+
+import java.lang.reflect.Array;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.List;
+
+import net.imagej.axis.Axes;
+import net.imagej.axis.CalibratedAxis;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.SingleCellArrayImg;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+import org.scijava.io.location.Location;
+
+/**
+ * Loads rectangular parts of single planes of an image series into an image.
+ * The loader maps the coordinates of the (possibly restricted) image to the
+ * planes of the file. A loader that is bound to a reader reads all planes with
+ * it and must only be used by the thread that borrowed the reader, an unbound
+ * loader borrows a reader of the {@link ScifioImgSource} for each load, hence
+ * it can be used by several threads concurrently and after the reader it was
+ * created with has been returned to the pool. Pixels are
+ * copied in bulk into the primitive storage of array images and cells, on or
+ * off the heap, whenever it matches the pixel type of the file.
+ *
+ * @author Gabriel Einsdorf
+ */
+class PlaneLoader<T extends RealType<T> & NativeType<T>> implements CellLoader<T> {
+
+	/* Bounds of the tiles the image is split into along X and Y */
+	private static final int MIN_TILE_SIZE = 256;
+
+	private static final int MAX_TILE_SIZE = 4096;
+
+	private final ScifioImgSource m_source;
+
+	private final ImgUtilityService m_utils;
+
+	private final Location m_loc;
+
+	private final int m_series;
+
+	private final int m_planarAxisCount;
+
+	/* offset of the image in the planar axes of the file */
+	private final long[] m_planarOffset;
+
+	/* for each non-planar axis, the file index of each image index */
+	private final long[][] m_nonPlanarIndices;
+
+	/* the lengths of the non-planar axes in the file */
+	private final long[] m_nonPlanarLengths;
+
+	private final long[] m_dimensions;
+
+	private final int[] m_tileSize;
+
+	/* the pixel type of the file, see FormatTools */
+	private final int m_pixelType;
+
+	/* the reader all planes are read with, null to borrow a reader per plane */
+	private final UnclosableReaderFilter m_reader;
+
+	/**
+	 * @param source the source that lends the readers
+	 * @param utils  used to decode the pixel values
+	 * @param r      a reader that is initialized for the location
+	 * @param loc    the location
+	 * @param series the image series
+	 * @param region the selected part of the image, can be <code>null</code>
+	 * @param bound  whether all planes are read with <code>r</code> by the
+	 *               calling thread, otherwise a reader is borrowed for each
+	 *               plane
+	 */
+	PlaneLoader(final ScifioImgSource source, final ImgUtilityService utils, final UnclosableReaderFilter r,
+			final Location loc, final int series, final ImageRegion region, final boolean bound) {
+		m_source = source;
+		m_reader = bound ? r : null;
+		m_utils = utils;
+		m_loc = loc;
+		m_series = series;
+
+		final ImageMetadata meta = r.getMetadata().get(series);
+		final List<CalibratedAxis> axes = meta.getAxes();
+		final long[] lengths = meta.getAxesLengths();
+
+		m_pixelType = meta.getPixelType();
+		m_planarAxisCount = meta.getPlanarAxisCount();
+		m_planarOffset = new long[m_planarAxisCount];
+		m_nonPlanarIndices = new long[axes.size() - m_planarAxisCount][];
+		m_nonPlanarLengths = meta.getAxesLengthsNonPlanar();
+		m_dimensions = new long[axes.size()];
+		m_tileSize = new int[axes.size()];
+
+		for (int d = 0; d < axes.size(); d++) {
+			final Range range = region == null ? null : region.getRange(axes.get(d).type());
+			if (d < m_planarAxisCount) {
+				// planar axes can only be restricted to an interval
+				m_planarOffset[d] = range == null ? 0 : range.head();
+				m_dimensions[d] = range == null ? lengths[d] : range.tail() - range.head() + 1;
+
+				final long optimal;
+				if (axes.get(d).type() == Axes.X) {
+					optimal = r.getOptimalTileWidth(series);
+				} else if (axes.get(d).type() == Axes.Y) {
+					optimal = r.getOptimalTileHeight(series);
+				} else {
+					optimal = m_dimensions[d];
+				}
+				m_tileSize[d] = (int) Math.min(m_dimensions[d],
+						Math.min(MAX_TILE_SIZE, Math.max(MIN_TILE_SIZE, optimal)));
+			} else {
+				final long[] indices = new long[(int) (range == null ? lengths[d] : range.size())];
+				for (int i = 0; i < indices.length; i++) {
+					indices[i] = range == null ? i : range.get(i);
+				}
+				m_nonPlanarIndices[d - m_planarAxisCount] = indices;
+				m_dimensions[d] = indices.length;
+				m_tileSize[d] = 1;
+			}
+		}
+	}
+
+	/**
+	 * @return the dimensions of the (possibly restricted) image
+	 */
+	long[] getDimensions() {
+		return m_dimensions.clone();
+	}
+
+	/**
+	 * @return the number of planar axes, they precede the non-planar axes
+	 */
+	int getPlanarAxisCount() {
+		return m_planarAxisCount;
+	}
+
+	/**
+	 * @return the size of the tiles the image should be split into, a tile is
+	 *         always part of a single plane
+	 */
+	int[] getTileSize() {
+		return m_tileSize.clone();
+	}
+
+	@Override
+	public void load(final SingleCellArrayImg<T, ?> cell) throws Exception {
+		load((RandomAccessibleInterval<T>) cell);
+	}
+
+	/**
+	 * Loads the pixels of the given interval of the image. The interval must not
+	 * span more than one plane, i.e. it must have a size of one in all non-planar
+	 * axes.
+	 *
+	 * @param target the interval to load into
+	 * @throws Exception if the plane can't be read
+	 */
+	void load(final RandomAccessibleInterval<T> target) throws Exception {
+		final long[] min = new long[m_planarAxisCount];
+		final long[] max = new long[m_planarAxisCount];
+		for (int d = 0; d < m_planarAxisCount; d++) {
+			min[d] = target.min(d);
+			max[d] = target.max(d);
+		}
+		final long[] position = new long[m_nonPlanarIndices.length];
+		for (int d = 0; d < position.length; d++) {
+			position[d] = target.min(m_planarAxisCount + d);
+		}
+		read(min, max, position, target);
+	}
+
+	/**
+	 * Loads a complete plane of the image.
+	 *
+	 * @param position the position of the plane in the non-planar axes
+	 * @param plane    the interval to load into, it only has the planar axes
+	 * @throws Exception if the plane can't be read
+	 */
+	void loadPlane(final long[] position, final RandomAccessibleInterval<T> plane) throws Exception {
+		read(new long[m_planarAxisCount], planeMax(), position, plane);
+	}
+
+	/**
+	 * Loads a complete plane of the image directly into a primitive array or
+	 * buffer, e.g. the storage of an array image or of a plane of a planar image.
+	 *
+	 * @param position the position of the plane in the non-planar axes
+	 * @param array    the array, it must be {@link #canDecodeInto(Object)
+	 *                 compatible}
+	 * @param offset   the index of the first pixel of the plane in the array
+	 * @throws Exception if the plane can't be read
+	 */
+	void loadPlane(final long[] position, final Object array, final int offset) throws Exception {
+		final Plane plane = readPlane(new long[m_planarAxisCount], planeMax(), position);
+		if (!decode(plane.getBytes(), m_pixelType, plane.getImageMetadata().isLittleEndian(), array, offset)) {
+			throw new IllegalArgumentException("The array does not fit the plane");
+		}
+	}
+
+	/**
+	 * @param array a primitive array or buffer
+	 * @return whether planes can be copied into the array without conversion
+	 */
+	boolean canDecodeInto(final Object array) {
+		return array != null && elementClass(array) == storageClass(m_pixelType);
+	}
+
+	private long[] planeMax() {
+		final long[] max = new long[m_planarAxisCount];
+		for (int d = 0; d < m_planarAxisCount; d++) {
+			max[d] = m_dimensions[d] - 1;
+		}
+		return max;
+	}
+
+	/*
+	 * Reads the given part of a plane, the bounds and the position are
+	 * coordinates of the image.
+	 */
+	private void read(final long[] planarMin, final long[] planarMax, final long[] position,
+			final RandomAccessibleInterval<T> target) throws Exception {
+		final Plane plane = readPlane(planarMin, planarMax, position);
+		final ImageMetadata meta = plane.getImageMetadata();
+		decode(plane.getBytes(), meta.getPixelType(), meta.isLittleEndian(), target);
+	}
+
+	private Plane readPlane(final long[] planarMin, final long[] planarMax, final long[] position)
+			throws Exception {
+		final long[] min = new long[m_planarAxisCount];
+		final long[] max = new long[m_planarAxisCount];
+		for (int d = 0; d < m_planarAxisCount; d++) {
+			min[d] = planarMin[d] + m_planarOffset[d];
+			max[d] = planarMax[d] + m_planarOffset[d];
+		}
+		final FinalInterval bounds = new FinalInterval(min, max);
+
+		final long[] filePosition = new long[m_nonPlanarIndices.length];
+		for (int d = 0; d < filePosition.length; d++) {
+			filePosition[d] = m_nonPlanarIndices[d][(int) position[d]];
+		}
+		final long planeIndex = FormatTools.positionToRaster(m_nonPlanarLengths, filePosition);
+
+		if (m_reader != null) {
+			return m_reader.openPlane(m_series, planeIndex, bounds);
+		}
+		return m_source.withReader(m_loc, r -> r.openPlane(m_series, planeIndex, bounds));
+	}
+
+	/*
+	 * Writes the pixels of a plane in flat iteration order into the target.
+	 */
+	private void decode(final byte[] bytes, final int pixelType, final boolean little,
+			final RandomAccessibleInterval<T> target) {
+		if (target instanceof ArrayImg || target instanceof SingleCellArrayImg) {
+			final Object access = ((NativeImg<?, ?>) target).update(null);
+			final Object array = access instanceof ArrayDataAccess
+					? ((ArrayDataAccess<?>) access).getCurrentStorageArray()
+					: OffHeapImgFactory.buffer(access);
+			if (array != null && capacity(array) == Views.iterable(target).size()
+					&& decode(bytes, pixelType, little, array, 0)) {
+				return;
+			}
+		}
+		final Cursor<T> c = Views.flatIterable(target).cursor();
+		int i = 0;
+		while (c.hasNext()) {
+			c.next().setReal(m_utils.decodeWord(bytes, i++, pixelType, little));
+		}
+	}
+
+	/*
+	 * Copies the pixels into a primitive array or buffer of the matching type,
+	 * returns false if it does not match the pixel type or is too small.
+	 */
+	private static boolean decode(final byte[] bytes, final int pixelType, final boolean little, final Object array,
+			final int offset) {
+		final Class<?> storage = storageClass(pixelType);
+		if (storage == null || elementClass(array) != storage) {
+			return false;
+		}
+		final int n = bytes.length / FormatTools.getBytesPerPixel(pixelType);
+		if (offset + n > capacity(array)) {
+			return false;
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(little ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		if (storage == byte[].class) {
+			if (array instanceof byte[]) {
+				System.arraycopy(bytes, 0, array, offset, n);
+			} else {
+				final ByteBuffer dst = ((ByteBuffer) array).duplicate();
+				dst.position(offset);
+				dst.put(buffer);
+			}
+		} else if (storage == short[].class) {
+			if (array instanceof short[]) {
+				buffer.asShortBuffer().get((short[]) array, offset, n);
+			} else {
+				final ShortBuffer dst = ((ShortBuffer) array).duplicate();
+				dst.position(offset);
+				dst.put(buffer.asShortBuffer());
+			}
+		} else if (storage == int[].class) {
+			if (array instanceof int[]) {
+				buffer.asIntBuffer().get((int[]) array, offset, n);
+			} else {
+				final IntBuffer dst = ((IntBuffer) array).duplicate();
+				dst.position(offset);
+				dst.put(buffer.asIntBuffer());
+			}
+		} else if (storage == float[].class) {
+			if (array instanceof float[]) {
+				buffer.asFloatBuffer().get((float[]) array, offset, n);
+			} else {
+				final FloatBuffer dst = ((FloatBuffer) array).duplicate();
+				dst.position(offset);
+				dst.put(buffer.asFloatBuffer());
+			}
+		} else {
+			if (array instanceof double[]) {
+				buffer.asDoubleBuffer().get((double[]) array, offset, n);
+			} else {
+				final DoubleBuffer dst = ((DoubleBuffer) array).duplicate();
+				dst.position(offset);
+				dst.put(buffer.asDoubleBuffer());
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * The primitive array class that corresponds to an array or buffer.
+	 */
+	private static Class<?> elementClass(final Object array) {
+		if (array instanceof ByteBuffer) {
+			return byte[].class;
+		} else if (array instanceof ShortBuffer) {
+			return short[].class;
+		} else if (array instanceof IntBuffer) {
+			return int[].class;
+		} else if (array instanceof FloatBuffer) {
+			return float[].class;
+		} else if (array instanceof DoubleBuffer) {
+			return double[].class;
+		}
+		return array.getClass();
+	}
+
+	private static int capacity(final Object array) {
+		return array instanceof Buffer ? ((Buffer) array).capacity() : Array.getLength(array);
+	}
+
+	/*
+	 * The storage of the imglib2 type of the pixel type, null if it can not be
+	 * copied in bulk.
+	 */
+	private static Class<?> storageClass(final int pixelType) {
+		switch (pixelType) {
+		case FormatTools.INT8:
+		case FormatTools.UINT8:
+			return byte[].class;
+		case FormatTools.INT16:
+		case FormatTools.UINT16:
+			return short[].class;
+		case FormatTools.INT32:
+		case FormatTools.UINT32:
+			return int[].class;
+		case FormatTools.FLOAT:
+			return float[].class;
+		case FormatTools.DOUBLE:
+			return double[].class;
+		default:
+			return null;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package org.knime.knip.io2;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import net.imglib2.img.Img;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * A {@link Spliterator} over the planes of an image that reads one plane at a
+ * time into a buffer, hence the image can be processed in constant memory. The
+ * buffer is re-used for all planes of a spliterator, splitting creates a new
+ * buffer for the split-off part.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ *
+ * @param <T> the pixel type
+ */
+public class PlaneSpliterator<T> implements Spliterator<PositionedPlane<T>> {
+
+	/**
+	 * Reads a plane into a buffer.
+	 */
+	public interface PlaneReader<T> {
+		/**
+		 * @param position the position of the plane in the non-planar axes
+		 * @param buffer   the buffer to read the plane into
+		 * @throws Exception if the plane can't be read
+		 */
+		void read(long[] position, Img<T> buffer) throws Exception;
+	}
+
+	private final PlaneReader<T> m_reader;
+
+	private final Supplier<Img<T>> m_buffers;
+
+	private final long[] m_nonPlanarDims;
+
+	private long m_next;
+
+	private final long m_end;
+
+	private Img<T> m_buffer;
+
+	/**
+	 * @param reader        reads the planes
+	 * @param buffers       creates a buffer with the planar dimensions of the
+	 *                      image
+	 * @param nonPlanarDims the dimensions of the non-planar axes
+	 */
+	public PlaneSpliterator(final PlaneReader<T> reader, final Supplier<Img<T>> buffers,
+			final long[] nonPlanarDims) {
+		this(reader, buffers, nonPlanarDims, 0, numPlanes(nonPlanarDims));
+	}
+
+	private PlaneSpliterator(final PlaneReader<T> reader, final Supplier<Img<T>> buffers,
+			final long[] nonPlanarDims, final long start, final long end) {
+		m_reader = reader;
+		m_buffers = buffers;
+		m_nonPlanarDims = nonPlanarDims;
+		m_next = start;
+		m_end = end;
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super PositionedPlane<T>> action) {
+		if (m_next >= m_end) {
+			return false;
+		}
+		if (m_buffer == null) {
+			m_buffer = m_buffers.get();
+		}
+
+		final long index = m_next++;
+		final long[] position = new long[m_nonPlanarDims.length];
+		IntervalIndexer.indexToPosition(index, m_nonPlanarDims, position);
+		try {
+			m_reader.read(position, m_buffer);
+		} catch (final RuntimeException e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new IllegalStateException("Could not read plane " + index, e);
+		}
+		action.accept(new PositionedPlane<>(index, position, m_buffer));
+		return true;
+	}
+
+	@Override
+	public Spliterator<PositionedPlane<T>> trySplit() {
+		final long mid = m_next + (m_end - m_next) / 2;
+		if (mid <= m_next) {
+			return null;
+		}
+		final PlaneSpliterator<T> prefix = new PlaneSpliterator<>(m_reader, m_buffers, m_nonPlanarDims, m_next,
+				mid);
+		m_next = mid;
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize() {
+		return m_end - m_next;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+	}
+
+	private static long numPlanes(final long[] nonPlanarDims) {
+		long n = 1;
+		for (final long d : nonPlanarDims) {
+			n *= d;
+		}
+		return n;
+	}
+}
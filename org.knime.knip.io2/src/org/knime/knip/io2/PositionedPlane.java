@@ -0,0 +1,54 @@
+package org.knime.knip.io2;
+
+import net.imglib2.img.Img;
+
+/**
+ * A plane of an image together with its position in the non-planar axes.
+ * Planes returned by a {@link PlaneSpliterator} share their buffer, a plane is
+ * only valid until the next plane of the same spliterator has been read.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ *
+ * @param <T> the pixel type
+ */
+public final class PositionedPlane<T> {
+
+	private final long m_index;
+
+	private final long[] m_position;
+
+	private final Img<T> m_plane;
+
+	/**
+	 * @param index    the index of the plane in the flat order of the non-planar
+	 *                 axes
+	 * @param position the position of the plane in the non-planar axes
+	 * @param plane    the pixels of the plane
+	 */
+	public PositionedPlane(final long index, final long[] position, final Img<T> plane) {
+		m_index = index;
+		m_position = position;
+		m_plane = plane;
+	}
+
+	/**
+	 * @return the index of the plane in the flat order of the non-planar axes
+	 */
+	public long getIndex() {
+		return m_index;
+	}
+
+	/**
+	 * @return the position of the plane in the non-planar axes
+	 */
+	public long[] getPosition() {
+		return m_position.clone();
+	}
+
+	/**
+	 * @return the pixels of the plane, only the planar axes
+	 */
+	public Img<T> getPlane() {
+		return m_plane;
+	}
+}
@@ -0,0 +1,130 @@
+package org.knime.knip.io2;
+
+import io.scif.Format;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import org.knime.core.node.NodeLogger;
+import org.scijava.io.location.Location;
+
+/**
+ * A thread-safe pool of initialized readers. Readers are borrowed for exclusive
+ * use, either by the {@link Location} they currently point to or by their
+ * {@link Format}, and are returned to the pool afterwards. If the pool exceeds
+ * its capacity the least recently returned readers are closed.
+ *
+ * @author Gabriel Einsdorf
+ */
+class ReaderPool {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(ReaderPool.class);
+
+	/* idle readers, the most recently returned reader first */
+	private final Deque<UnclosableReaderFilter> m_idle = new ArrayDeque<>();
+
+	private int m_maxIdle;
+
+	/**
+	 * @param maxIdle the maximum number of idle readers kept in the pool
+	 */
+	ReaderPool(final int maxIdle) {
+		m_maxIdle = Math.max(1, maxIdle);
+	}
+
+	/**
+	 * Borrows an idle reader that currently points to the given location.
+	 *
+	 * @param loc the location
+	 * @return the reader or <code>null</code> if there is no such reader
+	 */
+	synchronized UnclosableReaderFilter borrow(final Location loc) {
+		final Iterator<UnclosableReaderFilter> it = m_idle.iterator();
+		while (it.hasNext()) {
+			final UnclosableReaderFilter r = it.next();
+			if (loc.equals(r.getCurrentFile())) {
+				it.remove();
+				return r;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Borrows the least recently used idle reader of the given format, it has to
+	 * be re-initialized before it can be used for a new location.
+	 *
+	 * @param format the format class
+	 * @return the reader or <code>null</code> if there is no such reader
+	 */
+	synchronized UnclosableReaderFilter borrow(final Class<? extends Format> format) {
+		final Iterator<UnclosableReaderFilter> it = m_idle.descendingIterator();
+		while (it.hasNext()) {
+			final UnclosableReaderFilter r = it.next();
+			if (format.equals(r.getFormat().getClass())) {
+				it.remove();
+				return r;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a borrowed reader to the pool.
+	 *
+	 * @param r the reader
+	 */
+	void release(final UnclosableReaderFilter r) {
+		final List<UnclosableReaderFilter> evicted = new ArrayList<>();
+		synchronized (this) {
+			m_idle.addFirst(r);
+			while (m_idle.size() > m_maxIdle) {
+				evicted.add(m_idle.removeLast());
+			}
+		}
+		evicted.forEach(ReaderPool::closeQuietly);
+	}
+
+	/**
+	 * @param maxIdle the maximum number of idle readers kept in the pool
+	 */
+	void setMaxIdle(final int maxIdle) {
+		final List<UnclosableReaderFilter> evicted = new ArrayList<>();
+		synchronized (this) {
+			m_maxIdle = Math.max(1, maxIdle);
+			while (m_idle.size() > m_maxIdle) {
+				evicted.add(m_idle.removeLast());
+			}
+		}
+		evicted.forEach(ReaderPool::closeQuietly);
+	}
+
+	/**
+	 * Closes all idle readers.
+	 */
+	void close() {
+		final List<UnclosableReaderFilter> idle;
+		synchronized (this) {
+			idle = new ArrayList<>(m_idle);
+			m_idle.clear();
+		}
+		idle.forEach(ReaderPool::closeQuietly);
+	}
+
+	/**
+	 * Closes a reader, e.g. one that failed while it was borrowed.
+	 *
+	 * @param r the reader
+	 */
+	static void closeQuietly(final UnclosableReaderFilter r) {
+		try {
+			r.closeNow();
+		} catch (final IOException e) {
+			LOGGER.debug("Could not close reader", e);
+		}
+	}
+}
@@ -50,9 +50,9 @@ package org.knime.knip.io2;
 
 import io.scif.Format;
 import io.scif.FormatException;
+import io.scif.ImageMetadata;
 import io.scif.Metadata;
 import io.scif.Parser;
-import io.scif.Reader;
 import io.scif.config.SCIFIOConfig;
 import io.scif.filters.ChannelFiller;
 import io.scif.filters.PlaneSeparator;
@@ -61,31 +61,66 @@ import io.scif.img.ImageRegion;
 import io.scif.img.ImgOpener;
 import io.scif.img.ImgUtilityService;
 import io.scif.img.Range;
+import io.scif.img.cell.SCIFIOCellImgFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import net.imagej.ImgPlus;
 import net.imagej.axis.Axes;
 import net.imagej.axis.AxisType;
 import net.imagej.axis.CalibratedAxis;
 import net.imagej.axis.TypedAxis;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.cache.img.DiskCachedCellImgOptions.CacheType;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
 import net.imglib2.util.Pair;
+import net.imglib2.view.Views;
 
-import org.apache.log4j.Level;
 import org.knime.core.node.NodeLogger;
 import org.knime.knip.base.exceptions.KNIPRuntimeException;
-import org.knime.knip.core.KNIPLogService;
 import org.knime.knip.core.util.MiscViews;
+import org.knime.knip.io2.handle.BlockCachedHandle;
+import org.knime.knip.io2.handle.MappedFileHandle;
+import org.knime.knip.io2.handle.ReadAheadDataHandle;
+import org.scijava.io.handle.DataHandle;
 import org.scijava.io.location.Location;
 
 /**
- * A {@link ImgSource} adapted to the new scifio
+ * A {@link ImgSource} adapted to the new scifio. The source is thread-safe,
+ * concurrent calls borrow their own reader from a pool of initialized readers.
  * 
  * @author Gabriel Einsdorf
  */
@@ -96,28 +131,46 @@ public class ScifioImgSource implements ImgSource {
 	/* ID of the source */
 	private static final String SOURCE_ID = "New Scifio Image Source";
 
-	private UnclosableReaderFilter m_reader;
+	/* Format detection results, shared by all sources */
+	private static final FormatDetectionCache FORMAT_CACHE = new FormatDetectionCache();
 
-	/* The currently used file by the reader */
-	private Location m_currentFile;
+	/* Parsed metadata, shared by all sources */
+	private static final MetadataCache METADATA_CACHE = new MetadataCache();
+
+	/* Default number of idle readers kept in the pool */
+	private static final int DEFAULT_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+	private final ReaderPool m_readers;
+
+	/* The format of the last initialized reader */
+	private volatile Format m_lastFormat;
 
 	private final ImgOpener m_imgOpener;
 
 	@SuppressWarnings("rawtypes")
 	private final ImgFactory m_imgFactory;
 
-	private ImgUtilityService m_imgUtilsService;
+	private final ImgUtilityService m_imgUtilsService;
 
-	private boolean m_checkFileFormat;
+	private final boolean m_checkFileFormat;
 
-	private SCIFIOConfig m_scifioConfig;
+	private final SCIFIOConfig m_scifioConfig;
 
 	/*
 	 * helps do decide if the checkFileFormat option could have been set to false.
 	 */
-	private boolean m_usedDifferentReaders;
+	private volatile boolean m_usedDifferentReaders;
+
+	private volatile boolean m_lazyLoading;
 
-	private Level m_rootLvl;
+	/* maximum number of cells kept per lazily loaded image, <= 0 for soft refs */
+	private volatile long m_maxCachedCells;
+
+	/* runs the asynchronous methods, null for the default executor */
+	private volatile Executor m_asyncExecutor;
+
+	/* decodes the planes of a single image concurrently, null if disabled */
+	private ForkJoinPool m_planeDecodingPool;
 
 	public ScifioImgSource() {
 		this(true);
@@ -158,19 +211,100 @@ public class ScifioImgSource implements ImgSource {
 		m_checkFileFormat = checkFileFormat;
 		m_imgOpener = new ImgOpener(IO2Gateway.context());
 		m_imgFactory = imgFactory;
+		m_imgUtilsService = IO2Gateway.getService(ImgUtilityService.class);
+		m_readers = new ReaderPool(DEFAULT_POOL_SIZE);
 		m_usedDifferentReaders = false;
+	}
 
-		m_rootLvl = org.apache.log4j.Logger.getLogger(KNIPLogService.class.getSimpleName()).getLevel();
+	/**
+	 * @return the format detection cache shared by all sources
+	 */
+	public static FormatDetectionCache getFormatDetectionCache() {
+		return FORMAT_CACHE;
+	}
+
+	/**
+	 * @return the metadata cache shared by all sources
+	 */
+	public static MetadataCache getMetadataCache() {
+		return METADATA_CACHE;
+	}
+
+	/**
+	 * Sets the maximum number of idle readers this source keeps open. It should be
+	 * at least the number of threads that use this source concurrently.
+	 *
+	 * @param size the maximum number of idle readers
+	 */
+	public void setReaderPoolSize(final int size) {
+		m_readers.setMaxIdle(size);
+	}
+
+	/**
+	 * Enables the lazy loading of images. If enabled, {@link #getImg} only reads
+	 * the metadata and returns a {@link net.imglib2.cache.img.CachedCellImg}
+	 * whose cells, tiles of single planes, are read from the file when they are
+	 * first accessed, the image factory of this source is ignored. Lazily loaded
+	 * images read through this source, so it should only be closed once they are
+	 * no longer used.
+	 *
+	 * @param lazy whether images should be loaded lazily
+	 */
+	public void setLazyLoading(final boolean lazy) {
+		m_lazyLoading = lazy;
+	}
+
+	/**
+	 * Sets the number of cells that are kept in memory per lazily loaded image.
+	 *
+	 * @param maxCells the maximum number of cells, if <= 0 the cells are kept as
+	 *                 long as they are softly reachable
+	 */
+	public void setMaxCachedCells(final long maxCells) {
+		m_maxCachedCells = maxCells;
+	}
+
+	/**
+	 * Sets the number of threads that decode the planes of a single image. If
+	 * more than one thread is used, {@link #getImg} creates the image with the
+	 * image factory of this source and decodes its planes concurrently, each
+	 * thread with its own reader. The reader pool should hold at least one
+	 * reader per thread.
+	 *
+	 * @param numThreads the number of threads, <= 1 to decode the planes
+	 *                   sequentially
+	 */
+	public synchronized void setPlaneDecodingThreads(final int numThreads) {
+		if (m_planeDecodingPool != null) {
+			m_planeDecodingPool.shutdown();
+			m_planeDecodingPool = null;
+		}
+		if (numThreads > 1) {
+			m_planeDecodingPool = new ForkJoinPool(numThreads);
+		}
+	}
+
+	/**
+	 * Sets the executor the asynchronous methods of this source run on, e.g. a
+	 * bounded pool to limit the number of concurrent reads.
+	 *
+	 * @param executor the executor or <code>null</code> for the
+	 *                 {@link ImgSourceExecutors#defaultExecutor() default}
+	 */
+	public void setAsyncExecutor(final Executor executor) {
+		m_asyncExecutor = executor;
+	}
+
+	@Override
+	public Executor getAsyncExecutor() {
+		final Executor executor = m_asyncExecutor;
+		return executor != null ? executor : ImgSourceExecutors.defaultExecutor();
 	}
 
 	@Override
 	public void close() {
-		if (m_reader != null) {
-			try {
-				m_reader.closeNow();
-			} catch (final IOException e) {
-			}
-		}
+		setPlaneDecodingThreads(1);
+		m_readers.close();
 	}
 
 	@Override
@@ -184,7 +318,7 @@ public class ScifioImgSource implements ImgSource {
 	 * @throws Exception
 	 */
 	public int getSeriesCount(final Location loc) throws Exception {
-		return getReader(loc).getImageCount();
+		return metadata(loc).getSeriesCount();
 	}
 
 	@SuppressWarnings("rawtypes")
@@ -193,45 +327,193 @@ public class ScifioImgSource implements ImgSource {
 		return getImg(loc, currentSeries, null);
 	}
 
-	// TODO: Use new SCIFIO API
-	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@SuppressWarnings("rawtypes")
 	@Override
 	public ImgPlus<RealType> getImg(final Location loc, final int currentSeries,
 			final Pair<TypedAxis, long[]>[] axisSelectionConstraints) throws Exception {
+		return getImg(loc, currentSeries, axisSelectionConstraints, null);
+	}
 
-		org.apache.log4j.Logger.getLogger(KNIPLogService.class.getSimpleName()).setLevel(Level.ERROR);
+	@SuppressWarnings("rawtypes")
+	@Override
+	public ImgPlus<RealType> getImg(final Location loc, final int currentSeries,
+			final Pair<TypedAxis, long[]>[] axisSelectionConstraints, final Interval xyCrop) throws Exception {
+		if (xyCrop != null && xyCrop.numDimensions() != 2) {
+			throw new IllegalArgumentException("The crop must have exactly an X and a Y dimension");
+		}
+		return withReader(loc, r -> readImg(r, loc, currentSeries, axisSelectionConstraints, xyCrop));
+	}
 
-		final SCIFIOConfig options = new SCIFIOConfig();
-		options.imgOpenerSetComputeMinMax(false);
-		options.imgOpenerSetIndex(currentSeries);
-		// boolean withCropping = false;
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The requests are grouped by location, the results of a group are returned
+	 * consecutively in the order of the first request of each location. All
+	 * images of a group are read with the same reader, i.e. each file is only
+	 * opened and parsed once. The images are read one at a time while the stream
+	 * is consumed, the reader is returned to the pool after the last image of its
+	 * group or when the stream is closed.
+	 */
+	@Override
+	public Stream<ImgResult> getImgs(final List<ImgRequest> requests) {
+		final Map<Location, List<ImgRequest>> groups = requests.stream()
+				.collect(Collectors.groupingBy(ImgRequest::getLocation, LinkedHashMap::new, Collectors.toList()));
+		return groups.entrySet().stream().flatMap(group -> {
+			final GroupReader reader = new GroupReader(group.getKey(), group.getValue());
+			return StreamSupport.stream(Spliterators.spliterator(reader, group.getValue().size(),
+					Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(reader::close);
+		});
+	}
 
-		if (axisSelectionConstraints != null && axisSelectionConstraints.length > 0) {
+	/*
+	 * Reads the requests of one location with a single reader, which is borrowed
+	 * for the first request.
+	 */
+	private final class GroupReader implements Iterator<ImgResult> {
 
-			// withCropping = true;
-			// TODO: Still WRONG WRONG WRONG only 5d support?
-			final Range[] ranges = new Range[axisSelectionConstraints.length];
-			final AxisType[] axes = new AxisType[axisSelectionConstraints.length];
-			for (int i = 0; i < ranges.length; i++) {
-				ranges[i] = new Range(axisSelectionConstraints[i].getB());
-				axes[i] = axisSelectionConstraints[i].getA().type();
-			}
+		private final Location m_loc;
 
-			options.imgOpenerSetRegion(new ImageRegion(axes, ranges));
+		private final List<ImgRequest> m_group;
+
+		private int m_next;
+
+		private UnclosableReaderFilter m_reader;
+
+		/* the reader could not be initialized, all requests fail */
+		private Exception m_initFailure;
+
+		/* do not return a reader that failed to the pool */
+		private boolean m_failed;
+
+		GroupReader(final Location loc, final List<ImgRequest> group) {
+			m_loc = loc;
+			m_group = group;
 		}
-		try {
-			final ImgPlus<RealType> ret = MiscViews.cleanImgPlus(((List<ImgPlus>) m_imgOpener.openImgs(getReader(loc),
-					m_imgFactory.imgFactory(getPixelType(loc, currentSeries)), options)).get(0));
-			org.apache.log4j.Logger.getLogger(KNIPLogService.class.getSimpleName()).setLevel(m_rootLvl);
-			return ret;
-		} catch (Exception e) {
-			if (m_reader != null) {
-				m_reader.closeNow();
+
+		@Override
+		public boolean hasNext() {
+			return m_next < m_group.size();
+		}
+
+		@Override
+		public ImgResult next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final ImgRequest request = m_group.get(m_next++);
+			if (m_reader == null && m_initFailure == null) {
+				try {
+					m_reader = borrowReader(m_loc);
+				} catch (final Exception e) {
+					m_initFailure = e;
+				}
+			}
+			ImgResult result;
+			if (m_initFailure != null) {
+				result = ImgResult.failure(request, m_initFailure);
+			} else {
+				try {
+					result = ImgResult.success(request, readImg(m_reader, m_loc, request.getSeries(),
+							request.getAxisSelectionConstraints(), request.getXYCrop()));
+				} catch (final Exception e) {
+					m_failed = true;
+					result = ImgResult.failure(request, e);
+				}
+			}
+			if (!hasNext()) {
+				close();
+			}
+			return result;
+		}
+
+		void close() {
+			if (m_reader == null) {
+				return;
+			}
+			if (m_failed) {
+				ReaderPool.closeQuietly(m_reader);
+			} else {
+				m_readers.release(m_reader);
 			}
 			m_reader = null;
-			throw e;
+		}
+	}
+
+	// TODO: Use new SCIFIO API
+	/*
+	 * Reads a series with a reader that is initialized for the location.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private ImgPlus<RealType> readImg(final UnclosableReaderFilter r, final Location loc, final int currentSeries,
+			final Pair<TypedAxis, long[]>[] axisSelectionConstraints, final Interval xyCrop) throws Exception {
+
+		final SCIFIOConfig options = new SCIFIOConfig();
+		options.imgOpenerSetComputeMinMax(false);
+		options.imgOpenerSetIndex(currentSeries);
+
+		final ImageRegion region = createRegion(r.getMetadata().get(currentSeries), axisSelectionConstraints,
+				xyCrop);
+		if (region != null) {
+			options.imgOpenerSetRegion(region);
 		}
 
+		final ForkJoinPool planeDecodingPool;
+		synchronized (this) {
+			planeDecodingPool = m_planeDecodingPool;
+		}
+		if (m_lazyLoading) {
+			return MiscViews.cleanImgPlus(openLazy(r, loc, currentSeries, region));
+		} else if (!(m_imgFactory instanceof SCIFIOCellImgFactory)) {
+			return MiscViews.cleanImgPlus(openDirect(planeDecodingPool, r, loc, currentSeries, region));
+		}
+		// NB: images created by a SCIFIOCellImgFactory read their cells through
+		// the reader, they are copied before the reader returns to the pool and is
+		// used for another file by another thread.
+		final ImgPlus opened = ((List<ImgPlus>) m_imgOpener.openImgs(r,
+				m_imgFactory.imgFactory(getPixelType(r, currentSeries)), options)).get(0);
+		return MiscViews.cleanImgPlus(copyToPlanarImg(opened));
+	}
+
+	/*
+	 * Copies the pixels of an image into a planar image, the metadata is kept.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static ImgPlus copyToPlanarImg(final ImgPlus img) {
+		final Img copy = new PlanarImgFactory((NativeType) img.firstElement()).create(img);
+		final Cursor<NativeType> in = Views.flatIterable(img).cursor();
+		final Cursor<NativeType> out = Views.flatIterable(copy).cursor();
+		while (out.hasNext()) {
+			out.next().set(in.next());
+		}
+		return new ImgPlus(copy, img);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only the metadata is read upfront, each plane is read from the file when
+	 * it is consumed. Concurrently consumed parts of the spliterator use their own
+	 * readers.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	public Spliterator<PositionedPlane<RealType>> getPlanes(final Location loc, final int currentSeries,
+			final Pair<TypedAxis, long[]>[] axisSelectionConstraints) throws Exception {
+		return withReader(loc, r -> {
+			final ImageRegion region = createRegion(r.getMetadata().get(currentSeries), axisSelectionConstraints,
+					null);
+			// the planes are read after the reader has been returned to the pool
+			final PlaneLoader loader = new PlaneLoader(this, m_imgUtilsService, r, loc, currentSeries, region,
+					false);
+			final NativeType type = (NativeType) getPixelType(r, currentSeries);
+			final long[] dims = loader.getDimensions();
+			final int planarAxisCount = loader.getPlanarAxisCount();
+			final long[] planeDims = Arrays.copyOf(dims, planarAxisCount);
+			final long[] nonPlanarDims = Arrays.copyOfRange(dims, planarAxisCount, dims.length);
+
+			return new PlaneSpliterator<RealType>(loader::loadPlane,
+					() -> new ArrayImgFactory(type).create(planeDims), nonPlanarDims);
+		});
 	}
 
 	// META DATA
@@ -241,7 +523,7 @@ public class ScifioImgSource implements ImgSource {
 	 */
 	@Override
 	public List<CalibratedAxis> getAxes(final Location loc, final int currentSeries) throws Exception {
-		return getReader(loc).getMetadata().get(currentSeries).getAxes();
+		return metadata(loc).get(currentSeries).getAxes();
 	}
 
 	/**
@@ -249,14 +531,7 @@ public class ScifioImgSource implements ImgSource {
 	 */
 	@Override
 	public long[] getDimensions(final Location loc, final int currentSeries) throws Exception {
-		final long[] tmp = getReader(loc).getMetadata().get(currentSeries).getAxesLengths();
-		final long[] ret = new long[tmp.length];
-
-		for (int i = 0; i < tmp.length; i++) {
-			ret[i] = tmp[i];
-		}
-
-		return ret;
+		return metadata(loc).get(currentSeries).getAxesLengths();
 	}
 
 	/**
@@ -264,7 +539,7 @@ public class ScifioImgSource implements ImgSource {
 	 */
 	@Override
 	public String getName(final Location loc) throws Exception {
-		return getReader(loc).getMetadata().getDatasetName();
+		return metadata(loc).getDatasetName();
 	}
 
 	public boolean usedDifferentReaders() {
@@ -280,66 +555,311 @@ public class ScifioImgSource implements ImgSource {
 	@SuppressWarnings("rawtypes")
 	@Override
 	public RealType getPixelType(final Location loc, final int currentSeries) throws IOException, FormatException {
-
-		if (m_imgUtilsService == null) {
-			m_imgUtilsService = IO2Gateway.getService(ImgUtilityService.class);
+		try {
+			return m_imgUtilsService.makeType(metadata(loc).get(currentSeries).getPixelType());
+		} catch (IOException | FormatException | RuntimeException e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new IOException(e);
 		}
-
-		final RealType type = m_imgUtilsService
-				.makeType(getReader(loc).getMetadata().get(currentSeries).getPixelType());
-		return type;
 	}
 
 	// -- private helper methods --
 
-	private UnclosableReaderFilter getReader(final Location loc) throws FormatException, IOException {
-		org.apache.log4j.Logger.getLogger(KNIPLogService.class.getSimpleName()).setLevel(Level.ERROR);
-		if (m_reader == null || (!m_currentFile.equals(loc) && m_checkFileFormat)) {
-			final Format format = IO2Gateway.scifio().format().getFormat(loc, new SCIFIOConfig().checkerSetOpen(true));
+	@SuppressWarnings("rawtypes")
+	private RealType getPixelType(final ReaderFilter r, final int currentSeries) {
+		return m_imgUtilsService.makeType(r.getMetadata().get(currentSeries).getPixelType());
+	}
+
+	/*
+	 * Returns the metadata of the location, the file is only parsed if its
+	 * metadata is not cached.
+	 */
+	private MetadataCache.Entry metadata(final Location loc) throws Exception {
+		final MetadataCache.Entry cached = METADATA_CACHE.get(loc, m_scifioConfig.groupableIsGroupFiles());
+		if (cached != null) {
+			return cached;
+		}
+		return withReader(loc, r -> METADATA_CACHE.put(loc, m_scifioConfig.groupableIsGroupFiles(), r.getMetadata()));
+	}
+
+	/*
+	 * Converts the selected indices of the axes into a region of the series, null
+	 * if all indices are selected. Constraints of axes the series does not have
+	 * and indices beyond the length of an axis are ignored, planar axes are
+	 * restricted to the interval that spans their selected indices. A crop
+	 * replaces the constraints of X and Y, it is clipped to their extent.
+	 */
+	private static ImageRegion createRegion(final ImageMetadata meta,
+			final Pair<TypedAxis, long[]>[] axisSelectionConstraints, final Interval xyCrop) {
+		final Map<AxisType, Range> ranges = new HashMap<>();
+		if (xyCrop != null) {
+			putCrop(ranges, meta, Axes.X, xyCrop.min(0), xyCrop.max(0));
+			putCrop(ranges, meta, Axes.Y, xyCrop.min(1), xyCrop.max(1));
+		}
+		if (axisSelectionConstraints != null) {
+			for (final Pair<TypedAxis, long[]> constraint : axisSelectionConstraints) {
+				final AxisType type = constraint.getA().type();
+				final int d = meta.getAxisIndex(type);
+				if (d < 0 || constraint.getB() == null || (xyCrop != null && (type == Axes.X || type == Axes.Y))) {
+					continue;
+				}
+				final long length = meta.getAxisLength(d);
+				final long[] indices = LongStream.of(constraint.getB()).filter(i -> i >= 0 && i < length).distinct()
+						.sorted().toArray();
+				if (indices.length == 0) {
+					throw new IllegalArgumentException(
+							"No index of axis " + type.getLabel() + " with length " + length + " is selected");
+				}
+				if (indices.length == length) {
+					continue;
+				}
+				ranges.put(type, d < meta.getPlanarAxisCount() ? new Range(indices[0], indices[indices.length - 1])
+						: new Range(indices));
+			}
+		}
+		return ranges.isEmpty() ? null : new ImageRegion(ranges);
+	}
 
-			final UnclosableReaderFilter r = new UnclosableReaderFilter(format.createReader());
+	/*
+	 * Restricts an axis to the given bounds, clipped to its extent. A crop that
+	 * does not overlap the axis is rejected.
+	 */
+	private static void putCrop(final Map<AxisType, Range> ranges, final ImageMetadata meta, final AxisType type,
+			final long min, final long max) {
+		final int d = meta.getAxisIndex(type);
+		if (d < 0) {
+			return;
+		}
+		final long last = meta.getAxisLength(d) - 1;
+		if (max < 0 || min > last || max < min) {
+			throw new IllegalArgumentException("The crop [" + min + ", " + max + "] of axis " + type.getLabel()
+					+ " does not overlap its extent [0, " + last + "]");
+		}
+		final long from = Math.max(min, 0);
+		final long to = Math.min(max, last);
+		if (from > 0 || to < last) {
+			ranges.put(type, new Range(from, to));
+		}
+	}
 
-			final Parser p = format.createParser();
+	/*
+	 * Creates an image whose cells are read from the file on first access.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private ImgPlus openLazy(final UnclosableReaderFilter r, final Location loc, final int series,
+			final ImageRegion region) {
+		// the cells are read after the reader has been returned to the pool
+		final PlaneLoader loader = new PlaneLoader(this, m_imgUtilsService, r, loc, series, region, false);
+
+		ReadOnlyCachedCellImgOptions cacheOptions = ReadOnlyCachedCellImgOptions.options()
+				.cellDimensions(loader.getTileSize());
+		final long maxCachedCells = m_maxCachedCells;
+		if (maxCachedCells > 0) {
+			cacheOptions = cacheOptions.cacheType(CacheType.BOUNDED).maxCacheSize(maxCachedCells);
+		} else {
+			cacheOptions = cacheOptions.cacheType(CacheType.SOFTREF);
+		}
 
-			r.setMetadata(p.parse(loc, m_scifioConfig));
+		final Img img = new ReadOnlyCachedCellImgFactory(cacheOptions).create(loader.getDimensions(),
+				(NativeType) getPixelType(r, series), loader);
+		return createImgPlus(img, r, series);
+	}
 
-			// check if the current file really contains images
-			if (r.getMetadata().getImageCount() == 0) {
-				throw new KNIPRuntimeException("No images available in file " + loc);
+	/*
+	 * Creates the image with the image factory and decodes its planes, on the
+	 * given pool if there is one. The planes are written directly into the image:
+	 * into the primitive storage of array and planar images whenever the pixel
+	 * type allows it, into their slices of the image otherwise. Without a pool
+	 * all planes are read with the given reader, the file is parsed only once.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private ImgPlus openDirect(final ForkJoinPool pool, final UnclosableReaderFilter r, final Location loc,
+			final int series, final ImageRegion region) throws Exception {
+		// planes decoded by the pool threads need readers of their own
+		final PlaneLoader loader = new PlaneLoader(this, m_imgUtilsService, r, loc, series, region, pool == null);
+		final Img target = m_imgFactory.imgFactory(getPixelType(r, series)).create(loader.getDimensions());
+		final ImgPlus img = createImgPlus(target, r, series);
+
+		final long[] dims = loader.getDimensions();
+		final int planarAxisCount = loader.getPlanarAxisCount();
+		final long[] planeDims = new long[dims.length - planarAxisCount];
+		System.arraycopy(dims, planarAxisCount, planeDims, 0, planeDims.length);
+		final long planeSize = LongStream.of(dims).limit(planarAxisCount).reduce(1, (a, b) -> a * b);
+
+		// the storage arrays the planes are copied into, null if not applicable
+		final Object arrayStorage = target instanceof ArrayImg ? storageArray(((ArrayImg) target).update(null))
+				: null;
+		final boolean toArray = loader.canDecodeInto(arrayStorage);
+		final boolean toPlanes = target instanceof PlanarImg && planarAxisCount == 2
+				&& loader.canDecodeInto(storageArray(((PlanarImg) target).getPlane(0)));
+
+		final LongConsumer decodePlane = plane -> {
+			final long[] position = new long[planeDims.length];
+			IntervalIndexer.indexToPosition(plane, planeDims, position);
+			try {
+				if (toArray) {
+					loader.loadPlane(position, arrayStorage, (int) (plane * planeSize));
+				} else if (toPlanes) {
+					loader.loadPlane(position, storageArray(((PlanarImg) target).getPlane((int) plane)), 0);
+				} else {
+					final long[] min = new long[dims.length];
+					final long[] max = new long[dims.length];
+					for (int d = 0; d < planarAxisCount; d++) {
+						max[d] = dims[d] - 1;
+					}
+					System.arraycopy(position, 0, min, planarAxisCount, position.length);
+					System.arraycopy(position, 0, max, planarAxisCount, position.length);
+					loader.load(Views.interval(img, min, max));
+				}
+			} catch (final Exception e) {
+				throw new CompletionException(e);
 			}
+		};
 
-			// without the "separate"-stuff the images will not be split
-			// correctly for some types. This fixes the bug if, for instance,
-			// only Channel 1 is desired and Channel 0 was returned every time.
-			r.enable(ChannelFiller.class);
-			r.enable(PlaneSeparator.class).separate(axesToSplit(r));
-
-			if (m_reader != null && !(m_reader.getFormat().getClass().equals(r.getFormat().getClass()))) {
-				// more than one reader (class) has been used
-				m_usedDifferentReaders = true;
+		final long numPlanes = LongStream.of(planeDims).reduce(1, (a, b) -> a * b);
+		try {
+			if (pool == null) {
+				LongStream.range(0, numPlanes).forEach(decodePlane);
+			} else {
+				pool.submit(() -> LongStream.range(0, numPlanes).parallel().forEach(decodePlane)).get();
+			}
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		} catch (final ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof CompletionException && cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
 			}
-			if (m_reader != null) {
-				m_reader.closeNow();
+			throw e;
+		}
+		return img;
+	}
+
+	/*
+	 * The primitive array or off-heap buffer of an image storage, null if the
+	 * storage is neither.
+	 */
+	private static Object storageArray(final Object access) {
+		return access instanceof ArrayDataAccess ? ((ArrayDataAccess<?>) access).getCurrentStorageArray()
+				: OffHeapImgFactory.buffer(access);
+	}
+
+	/*
+	 * Wraps the image into an ImgPlus with the name and axes of the series.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static ImgPlus createImgPlus(final Img img, final ReaderFilter r, final int series) {
+		final CalibratedAxis[] axes = r.getMetadata().get(series).getAxes().stream().map(CalibratedAxis::copy)
+				.toArray(CalibratedAxis[]::new);
+		return new ImgPlus(img, r.getMetadata().getDatasetName(), axes);
+	}
+
+	/* A function that is applied to a borrowed reader */
+	interface ReaderFunction<R> {
+		R apply(UnclosableReaderFilter r) throws Exception;
+	}
+
+	/*
+	 * Borrows a reader for the given location, applies the function and returns
+	 * the reader to the pool. Readers that failed are closed instead.
+	 */
+	<R> R withReader(final Location loc, final ReaderFunction<R> function) throws Exception {
+		final UnclosableReaderFilter r = borrowReader(loc);
+		boolean failed = true;
+		try {
+			final R res = function.apply(r);
+			failed = false;
+			return res;
+		} finally {
+			if (failed) {
+				ReaderPool.closeQuietly(r);
+			} else {
+				m_readers.release(r);
 			}
-			m_reader = r;
-		} else if (!m_currentFile.equals(loc) && !m_checkFileFormat) {
-			// re-use the last reader, set the new image reference (i.e. id) and
-			// parse the metadata
-			m_reader.closeNow();
+		}
+	}
+
+	/*
+	 * Borrows an initialized reader for the given location: a reader that already
+	 * points to the location is re-used as is, otherwise an idle reader of the
+	 * same format is re-initialized or a new one is created.
+	 */
+	private UnclosableReaderFilter borrowReader(final Location loc) throws FormatException, IOException {
+		UnclosableReaderFilter r = m_readers.borrow(loc);
+		if (r != null) {
+			return r;
+		}
+
+		final Format lastFormat = m_lastFormat;
+		final Format format;
+		if (lastFormat == null || m_checkFileFormat) {
+			format = FORMAT_CACHE.getFormat(loc);
+		} else {
+			// re-use the format of the last file
+			format = lastFormat;
+		}
+
+		if (lastFormat != null && !lastFormat.getClass().equals(format.getClass())) {
+			// more than one reader (class) has been used
+			m_usedDifferentReaders = true;
+		}
+		m_lastFormat = format;
 
-			final Parser p = m_reader.getFormat().createParser();
+		r = m_readers.borrow(format.getClass());
+		if (r == null) {
+			r = new UnclosableReaderFilter(format.createReader());
+		}
 
-			m_reader.setMetadata(p.parse(loc, m_scifioConfig));
+		try {
+			if (r.getMetadata() != null) {
+				// close the file the reader currently points to
+				r.closeNow();
+			}
+			initialize(r, format, loc);
+		} catch (FormatException | IOException | RuntimeException e) {
+			ReaderPool.closeQuietly(r);
+			throw e;
+		}
+		return r;
+	}
 
-			// TODO maybe this is a bug and we shouldn't have to do this.
-			m_reader.enable(ChannelFiller.class);
-			m_reader.enable(PlaneSeparator.class).separate(axesToSplit(m_reader));
+	/*
+	 * Points the reader to the given location and parses the metadata.
+	 */
+	private void initialize(final UnclosableReaderFilter r, final Format format, final Location loc)
+			throws FormatException, IOException {
+		final Parser p = format.createParser();
+
+		// buffer the many small reads of the parser with an adaptive read-ahead,
+		// files on network shares are read through the block cache if enabled
+		final DataHandle<Location> handle = ReadAheadDataHandle
+				.wrap(BlockCachedHandle.wrap(MappedFileHandle.openForReading(loc)));
+		if (handle == null) {
+			// formats that do not read from a handle
+			r.setMetadata(p.parse(loc, m_scifioConfig));
+		} else {
+			r.setMetadata(p.parse(handle, m_scifioConfig));
 		}
 
-		// sets the file the reader currently points to
-		m_currentFile = loc;
-		org.apache.log4j.Logger.getLogger(KNIPLogService.class.getSimpleName()).setLevel(m_rootLvl);
-		return m_reader;
+		// check if the current file really contains images
+		if (r.getMetadata().getImageCount() == 0) {
+			throw new KNIPRuntimeException("No images available in file " + loc);
+		}
+
+		// without the "separate"-stuff the images will not be split
+		// correctly for some types. This fixes the bug if, for instance,
+		// only Channel 1 is desired and Channel 0 was returned every time.
+		r.enable(ChannelFiller.class);
+		r.enable(PlaneSeparator.class).separate(axesToSplit(r));
+
+		METADATA_CACHE.put(loc, m_scifioConfig.groupableIsGroupFiles(), r.getMetadata());
 	}
 
 	/*
@@ -363,30 +883,4 @@ public class ScifioImgSource implements ImgSource {
 		return axes.toArray(new AxisType[axes.size()]);
 	}
 
-	/* Helper class to prevent a reader from being closed. */
-	private class UnclosableReaderFilter extends ReaderFilter {
-
-		public UnclosableReaderFilter(final Reader r) {
-			super(r);
-		}
-
-		@Override
-		public void close() throws IOException {
-			// do nothing here to prevent the reader from being closed
-		}
-
-		@Override
-		public void close(final boolean fileOnly) throws IOException {
-			// do nothing here to prevent the reader from being closed
-		}
-
-		/*
-		 * Closes the underlying reader, called by the ScifioImgsource.close()-method.
-		 */
-		private void closeNow() throws IOException {
-			super.close(false);
-		}
-
-	}
-
 }
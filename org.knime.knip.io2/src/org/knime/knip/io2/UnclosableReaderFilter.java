@@ -0,0 +1,36 @@
+package org.knime.knip.io2;
+
+import io.scif.Reader;
+import io.scif.filters.ReaderFilter;
+
+import java.io.IOException;
+
+/**
+ * Helper class to prevent a reader from being closed by {@link io.scif.img.ImgOpener}.
+ *
+ * @author Gabriel Einsdorf
+ */
+class UnclosableReaderFilter extends ReaderFilter {
+
+	public UnclosableReaderFilter(final Reader r) {
+		super(r);
+	}
+
+	@Override
+	public void close() throws IOException {
+		// do nothing here to prevent the reader from being closed
+	}
+
+	@Override
+	public void close(final boolean fileOnly) throws IOException {
+		// do nothing here to prevent the reader from being closed
+	}
+
+	/*
+	 * Closes the underlying reader, called by the owner of the reader.
+	 */
+	void closeNow() throws IOException {
+		super.close(false);
+	}
+
+}
@@ -0,0 +1,276 @@
+package org.knime.knip.io2.handle;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.scijava.io.handle.AbstractDataHandle;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.location.Location;
+
+/**
+ * Base class of read-only {@link DataHandle}s for remote files that can only
+ * be read as a stream. The stream is consumed in blocks of
+ * {@link BlockCache#BLOCK_SIZE} bytes that are kept in the {@link BlockCache},
+ * seeking backwards to a block that is no longer cached opens a new stream.
+ * Blocks of files without a version are only cached while the handle is open.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ * @param <L> the type of the location
+ */
+public abstract class AbstractStreamHandle<L extends Location> extends AbstractDataHandle<L> {
+
+	private InputStream m_stream;
+
+	/* index of the next block of the stream */
+	private long m_streamBlock;
+
+	private long m_length = -1;
+
+	private long m_offset;
+
+	/* cache version of a file without version, created on first use */
+	private String m_transientVersion;
+
+	/**
+	 * Opens a new stream at the start of the file.
+	 *
+	 * @return the stream
+	 * @throws IOException if the file can not be opened
+	 */
+	protected abstract InputStream openStream() throws IOException;
+
+	/**
+	 * @return the length of the file or <code>-1</code> if it is unknown, called
+	 *         after {@link #openStream()}
+	 */
+	protected abstract long streamLength();
+
+	/**
+	 * @return the version of the file, e.g. its modification date, or
+	 *         <code>null</code> if it is unknown, called after
+	 *         {@link #openStream()}
+	 */
+	protected abstract String version();
+
+	@Override
+	public boolean isReadable() {
+		return true;
+	}
+
+	@Override
+	public boolean isWritable() {
+		return false;
+	}
+
+	@Override
+	public boolean exists() throws IOException {
+		try {
+			init();
+			return true;
+		} catch (final IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public long offset() throws IOException {
+		return m_offset;
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		m_offset = pos;
+	}
+
+	@Override
+	public long length() throws IOException {
+		init();
+		return m_length;
+	}
+
+	@Override
+	public void setLength(final long length) throws IOException {
+		throw new IOException("Stream handles are read-only");
+	}
+
+	@Override
+	public int read() throws IOException {
+		init();
+		if (m_offset >= m_length) {
+			return -1;
+		}
+		return readByte() & 0xff;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		init();
+		if (m_offset >= m_length) {
+			throw new EOFException();
+		}
+		final byte[] block = block(m_offset / BlockCache.BLOCK_SIZE);
+		return block[(int) (m_offset++ % BlockCache.BLOCK_SIZE)];
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		init();
+		if (len == 0) {
+			return 0;
+		}
+		if (m_offset >= m_length) {
+			return -1;
+		}
+		final int n = (int) Math.min(len, m_length - m_offset);
+		int done = 0;
+		while (done < n) {
+			final byte[] block = block(m_offset / BlockCache.BLOCK_SIZE);
+			final int pos = (int) (m_offset % BlockCache.BLOCK_SIZE);
+			final int count = Math.min(n - done, block.length - pos);
+			System.arraycopy(block, pos, b, off + done, count);
+			done += count;
+			m_offset += count;
+		}
+		return n;
+	}
+
+	@Override
+	public void readFully(final byte[] b, final int off, final int len) throws IOException {
+		int done = 0;
+		while (done < len) {
+			final int n = read(b, off + done, len - done);
+			if (n < 0) {
+				throw new EOFException();
+			}
+			done += n;
+		}
+	}
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		init();
+		final int skipped = (int) Math.max(0, Math.min(n, m_length - m_offset));
+		m_offset += skipped;
+		return skipped;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		throw new IOException("Stream handles are read-only");
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		throw new IOException("Stream handles are read-only");
+	}
+
+	@Override
+	public void close() throws IOException {
+		closeStream();
+		if (m_transientVersion != null) {
+			BlockCache.getInstance().invalidate(get().getURI(), m_transientVersion);
+			m_transientVersion = null;
+		}
+	}
+
+	private void closeStream() throws IOException {
+		if (m_stream != null) {
+			final InputStream stream = m_stream;
+			m_stream = null;
+			stream.close();
+		}
+	}
+
+	/*
+	 * Opens the stream and determines the length, if it is unknown the file is
+	 * streamed once to count its bytes.
+	 */
+	private void init() throws IOException {
+		if (m_length >= 0) {
+			return;
+		}
+		open();
+		final long length = streamLength();
+		if (length >= 0) {
+			m_length = length;
+			return;
+		}
+		long counted = 0;
+		byte[] block;
+		do {
+			block = nextBlock();
+			counted += block.length;
+		} while (block.length == BlockCache.BLOCK_SIZE);
+		m_length = counted;
+		// the stream is exhausted, release it until it is needed again
+		closeStream();
+	}
+
+	private void open() throws IOException {
+		closeStream();
+		m_stream = openStream();
+		m_streamBlock = 0;
+	}
+
+	/*
+	 * Returns the given block, streaming up to it if it is not cached.
+	 */
+	private byte[] block(final long index) throws IOException {
+		final BlockCache cache = BlockCache.getInstance();
+		final byte[] cached = cache.get(get().getURI(), cacheVersion(), index);
+		if (cached != null) {
+			return cached;
+		}
+		if (m_stream == null || m_streamBlock > index) {
+			open();
+		}
+		byte[] block;
+		do {
+			block = nextBlock();
+		} while (m_streamBlock <= index);
+		if (block.length == 0) {
+			throw new EOFException();
+		}
+		if (block.length < BlockCache.BLOCK_SIZE) {
+			// the stream is exhausted, release it until it is needed again
+			closeStream();
+		}
+		return block;
+	}
+
+	/*
+	 * Reads the next block of the stream and caches it, the last block of the
+	 * file is shorter.
+	 */
+	private byte[] nextBlock() throws IOException {
+		final byte[] block = new byte[BlockCache.BLOCK_SIZE];
+		int n = 0;
+		while (n < block.length) {
+			final int read = m_stream.read(block, n, block.length - n);
+			if (read < 0) {
+				break;
+			}
+			n += read;
+		}
+		final byte[] result = n == block.length ? block : Arrays.copyOf(block, n);
+		BlockCache.getInstance().put(get().getURI(), cacheVersion(), m_streamBlock++, result);
+		return result;
+	}
+
+	/*
+	 * The version the blocks are cached with, a transient version if the file
+	 * has none.
+	 */
+	private String cacheVersion() {
+		final String version = version();
+		if (version != null) {
+			return version;
+		}
+		if (m_transientVersion == null) {
+			m_transientVersion = BlockCache.newTransientVersion();
+		}
+		return m_transientVersion;
+	}
+}
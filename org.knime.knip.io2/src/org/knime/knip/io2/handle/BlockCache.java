@@ -0,0 +1,236 @@
+package org.knime.knip.io2.handle;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded in-memory cache of fixed-size blocks of remote files, shared by all
+ * remote handles. The blocks are keyed by the uri, a version of the file, e.g.
+ * its ETag, and the block index. The least recently used blocks are evicted
+ * once the cache exceeds its size. Blocks of versioned files are also kept in
+ * an optional {@link DiskBlockCache} that is consulted on misses. Handles of
+ * files without a version use a {@link #newTransientVersion() transient
+ * version} that is only valid while the handle is open.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class BlockCache {
+
+	/**
+	 * Size of the blocks in bytes, block <code>i</code> starts at byte
+	 * <code>i * BLOCK_SIZE</code>.
+	 */
+	public static final int BLOCK_SIZE = 256 * 1024;
+
+	private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	private static final String TRANSIENT_PREFIX = "transient:";
+
+	private static final BlockCache INSTANCE = new BlockCache(DEFAULT_MAX_BYTES,
+			DiskBlockCache.fromSystemProperties());
+
+	private final Map<Key, byte[]> m_blocks = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final long m_maxBytes;
+
+	private final DiskBlockCache m_disk;
+
+	private long m_bytes;
+
+	private final AtomicLong m_hits = new AtomicLong();
+
+	private final AtomicLong m_misses = new AtomicLong();
+
+	/**
+	 * @param maxBytes the maximum number of cached bytes
+	 */
+	public BlockCache(final long maxBytes) {
+		this(maxBytes, null);
+	}
+
+	/**
+	 * @param maxBytes the maximum number of bytes cached in memory
+	 * @param disk     the disk tier, can be <code>null</code>
+	 */
+	public BlockCache(final long maxBytes, final DiskBlockCache disk) {
+		m_maxBytes = maxBytes;
+		m_disk = disk;
+	}
+
+	/**
+	 * Creates a version for a file whose server reports neither an ETag nor a
+	 * modification date. It is unique to the handle that creates it, so no other
+	 * handle reads its blocks, and the blocks are never persisted. The handle
+	 * {@link #invalidate(URI, String) invalidates} them when it is closed.
+	 *
+	 * @return a new transient version
+	 */
+	public static String newTransientVersion() {
+		return TRANSIENT_PREFIX + UUID.randomUUID();
+	}
+
+	private static boolean isPersistent(final String version) {
+		return version != null && !version.startsWith(TRANSIENT_PREFIX);
+	}
+
+	/**
+	 * @return the cache shared by all remote handles
+	 */
+	public static BlockCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param uri     the uri of the file
+	 * @param version the version of the file, can be <code>null</code>
+	 * @param index   the block index
+	 * @return the block or <code>null</code> if it is not cached
+	 */
+	public byte[] get(final URI uri, final String version, final long index) {
+		byte[] block;
+		synchronized (m_blocks) {
+			block = m_blocks.get(new Key(uri, version, index));
+		}
+		(block == null ? m_misses : m_hits).incrementAndGet();
+		if (block == null && m_disk != null && isPersistent(version)) {
+			block = m_disk.get(uri, version, index);
+			if (block != null) {
+				putInMemory(new Key(uri, version, index), block);
+			}
+		}
+		return block;
+	}
+
+	/**
+	 * @param uri     the uri of the file
+	 * @param version the version of the file, can be <code>null</code>
+	 * @param index   the block index
+	 * @return whether the block is cached, does not count as an access
+	 */
+	public boolean contains(final URI uri, final String version, final long index) {
+		synchronized (m_blocks) {
+			if (m_blocks.containsKey(new Key(uri, version, index))) {
+				return true;
+			}
+		}
+		return m_disk != null && isPersistent(version) && m_disk.contains(uri, version, index);
+	}
+
+	/**
+	 * @param uri     the uri of the file
+	 * @param version the version of the file, can be <code>null</code>
+	 * @param index   the block index
+	 * @param block   the block, must not be modified afterwards
+	 */
+	public void put(final URI uri, final String version, final long index, final byte[] block) {
+		putInMemory(new Key(uri, version, index), block);
+		// unversioned files may change at any time, they are not persisted
+		if (m_disk != null && isPersistent(version)) {
+			m_disk.put(uri, version, index, block);
+		}
+	}
+
+	/**
+	 * Removes all blocks of a version of a file from memory.
+	 *
+	 * @param uri     the uri of the file
+	 * @param version the version of the file, can be <code>null</code>
+	 */
+	public void invalidate(final URI uri, final String version) {
+		synchronized (m_blocks) {
+			final Iterator<Map.Entry<Key, byte[]>> it = m_blocks.entrySet().iterator();
+			while (it.hasNext()) {
+				final Map.Entry<Key, byte[]> entry = it.next();
+				if (entry.getKey().m_uri.equals(uri) && Objects.equals(entry.getKey().m_version, version)) {
+					m_bytes -= entry.getValue().length;
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the disk tier or <code>null</code> if blocks are only cached in
+	 *         memory
+	 */
+	public DiskBlockCache getDiskCache() {
+		return m_disk;
+	}
+
+	private void putInMemory(final Key key, final byte[] block) {
+		synchronized (m_blocks) {
+			final byte[] previous = m_blocks.put(key, block);
+			m_bytes += block.length - (previous == null ? 0 : previous.length);
+			while (m_bytes > m_maxBytes && !m_blocks.isEmpty()) {
+				final Map.Entry<Key, byte[]> eldest = m_blocks.entrySet().iterator().next();
+				m_bytes -= eldest.getValue().length;
+				m_blocks.remove(eldest.getKey());
+			}
+		}
+	}
+
+	/**
+	 * @return the number of blocks that were cached in memory
+	 */
+	public long getHitCount() {
+		return m_hits.get();
+	}
+
+	/**
+	 * @return the number of blocks that were not cached in memory
+	 */
+	public long getMissCount() {
+		return m_misses.get();
+	}
+
+	/**
+	 * Removes all blocks cached in memory and resets the counters.
+	 */
+	public void clear() {
+		synchronized (m_blocks) {
+			m_blocks.clear();
+			m_bytes = 0;
+		}
+		m_hits.set(0);
+		m_misses.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "Block cache: " + getHitCount() + " hits, " + getMissCount() + " misses";
+	}
+
+	private static final class Key {
+
+		private final URI m_uri;
+
+		private final String m_version;
+
+		private final long m_index;
+
+		private Key(final URI uri, final String version, final long index) {
+			m_uri = uri;
+			m_version = version;
+			m_index = index;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return m_index == other.m_index && m_uri.equals(other.m_uri) && Objects.equals(m_version, other.m_version);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(m_uri, m_version, m_index);
+		}
+	}
+}
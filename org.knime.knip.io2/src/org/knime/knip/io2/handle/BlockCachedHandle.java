@@ -0,0 +1,217 @@
+package org.knime.knip.io2.handle;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.scijava.io.handle.AbstractDataHandle;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * A read-only {@link DataHandle} decorator that reads files on network shares
+ * through the {@link BlockCache}, so repeated reads of an unchanged file are
+ * served from memory or the local {@link DiskBlockCache} instead of the
+ * network. The blocks are keyed by the uri, the modification time and the
+ * length of the file.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class BlockCachedHandle extends AbstractDataHandle<Location> {
+
+	/* File store types of network file systems as reported on Linux and macOS */
+	private static final Set<String> NETWORK_FILE_SYSTEMS = new HashSet<>(Arrays.asList("nfs", "nfs4", "cifs",
+			"smb", "smbfs", "smb2", "smb3", "afpfs", "webdav", "davfs", "fuse.sshfs", "9p"));
+
+	private final DataHandle<Location> m_handle;
+
+	private final URI m_uri;
+
+	private final String m_version;
+
+	private final long m_length;
+
+	private long m_offset;
+
+	/**
+	 * @param handle the handle to read from, it is closed with this handle
+	 * @param file   the file read by the handle
+	 */
+	public BlockCachedHandle(final DataHandle<Location> handle, final File file) {
+		m_handle = handle;
+		m_uri = file.toURI();
+		m_length = file.length();
+		m_version = file.lastModified() + "-" + m_length;
+		set(handle.get());
+		if (handle.getContext() != null) {
+			setContext(handle.getContext());
+		}
+	}
+
+	/**
+	 * Reads the given handle through the block cache if the disk cache is enabled
+	 * and the handle reads a file on a network share.
+	 *
+	 * @param handle the handle, can be <code>null</code>
+	 * @return the cached handle or the given handle
+	 */
+	public static DataHandle<Location> wrap(final DataHandle<Location> handle) {
+		if (handle == null || BlockCache.getInstance().getDiskCache() == null
+				|| !(handle.get() instanceof FileLocation)) {
+			return handle;
+		}
+		final File file = ((FileLocation) handle.get()).getFile();
+		return file.isFile() && isOnNetworkShare(file.toPath()) ? new BlockCachedHandle(handle, file) : handle;
+	}
+
+	private static boolean isOnNetworkShare(final Path path) {
+		final Path root = path.toAbsolutePath().getRoot();
+		if (root != null && root.toString().startsWith("\\\\")) {
+			// windows unc path
+			return true;
+		}
+		try {
+			final FileStore store = Files.getFileStore(path);
+			return NETWORK_FILE_SYSTEMS.contains(store.type().toLowerCase(Locale.ROOT));
+		} catch (final IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean isReadable() {
+		return true;
+	}
+
+	@Override
+	public boolean isWritable() {
+		return false;
+	}
+
+	@Override
+	public boolean exists() throws IOException {
+		return m_handle.exists();
+	}
+
+	@Override
+	public long offset() throws IOException {
+		return m_offset;
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		m_offset = pos;
+	}
+
+	@Override
+	public long length() throws IOException {
+		return m_length;
+	}
+
+	@Override
+	public void setLength(final long length) throws IOException {
+		throw new IOException("Cached handles are read-only");
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (m_offset >= m_length) {
+			return -1;
+		}
+		return readByte() & 0xff;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		if (m_offset >= m_length) {
+			throw new EOFException();
+		}
+		final byte[] block = block(m_offset / BlockCache.BLOCK_SIZE);
+		return block[(int) (m_offset++ % BlockCache.BLOCK_SIZE)];
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (m_offset >= m_length) {
+			return -1;
+		}
+		final int n = (int) Math.min(len, m_length - m_offset);
+		int done = 0;
+		while (done < n) {
+			final byte[] block = block(m_offset / BlockCache.BLOCK_SIZE);
+			final int pos = (int) (m_offset % BlockCache.BLOCK_SIZE);
+			final int count = Math.min(n - done, block.length - pos);
+			System.arraycopy(block, pos, b, off + done, count);
+			done += count;
+			m_offset += count;
+		}
+		return n;
+	}
+
+	@Override
+	public void readFully(final byte[] b, final int off, final int len) throws IOException {
+		int done = 0;
+		while (done < len) {
+			final int n = read(b, off + done, len - done);
+			if (n < 0) {
+				throw new EOFException();
+			}
+			done += n;
+		}
+	}
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		final int skipped = (int) Math.max(0, Math.min(n, m_length - m_offset));
+		m_offset += skipped;
+		return skipped;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		throw new IOException("Cached handles are read-only");
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		throw new IOException("Cached handles are read-only");
+	}
+
+	@Override
+	public Class<Location> getType() {
+		return Location.class;
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_handle.close();
+	}
+
+	/*
+	 * Returns the given block, reading it from the file if it is not cached.
+	 */
+	private byte[] block(final long index) throws IOException {
+		final BlockCache cache = BlockCache.getInstance();
+		byte[] block = cache.get(m_uri, m_version, index);
+		if (block == null) {
+			final long start = index * BlockCache.BLOCK_SIZE;
+			block = new byte[(int) Math.min(BlockCache.BLOCK_SIZE, m_length - start)];
+			m_handle.seek(start);
+			m_handle.readFully(block, 0, block.length);
+			cache.put(m_uri, m_version, index, block);
+		}
+		return block;
+	}
+}
@@ -0,0 +1,263 @@
+package org.knime.knip.io2.handle;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.knime.core.node.NodeLogger;
+
+/**
+ * A persistent cache of file blocks in a local directory, the second tier of
+ * the {@link BlockCache}. Each block is stored in its own file named after the
+ * hash of the uri, the version of the file and the block index, so blocks of
+ * modified files are never served. The least recently used blocks are deleted
+ * once the cache exceeds its size, the order survives restarts through the
+ * modification times of the block files.
+ *
+ * The cache is enabled with the system property {@value #DIR_PROPERTY}, its
+ * size in megabytes is set with {@value #SIZE_PROPERTY}.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class DiskBlockCache {
+
+	/**
+	 * System property, the directory of the cache, the cache is disabled if it is
+	 * not set.
+	 */
+	public static final String DIR_PROPERTY = "knip.io2.diskCache.dir";
+
+	/**
+	 * System property, the maximum size of the cache in megabytes.
+	 */
+	public static final String SIZE_PROPERTY = "knip.io2.diskCache.size";
+
+	private static final long DEFAULT_MAX_MEGABYTES = 2048;
+
+	private static final String SUFFIX = ".block";
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(DiskBlockCache.class);
+
+	private final Path m_dir;
+
+	private final long m_maxBytes;
+
+	/* Sizes of the block files by name, in access order */
+	private final Map<String, Long> m_files = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long m_bytes;
+
+	private final AtomicLong m_hits = new AtomicLong();
+
+	private final AtomicLong m_misses = new AtomicLong();
+
+	/**
+	 * @param dir      the directory of the cache, created if needed
+	 * @param maxBytes the maximum size of the cache
+	 * @throws IOException if the directory can not be created or listed
+	 */
+	public DiskBlockCache(final Path dir, final long maxBytes) throws IOException {
+		m_dir = Files.createDirectories(dir);
+		m_maxBytes = maxBytes;
+		index();
+	}
+
+	/**
+	 * @return the cache configured by the system properties or <code>null</code>
+	 *         if the disk cache is disabled or can not be used
+	 */
+	static DiskBlockCache fromSystemProperties() {
+		final String dir = System.getProperty(DIR_PROPERTY);
+		if (dir == null || dir.trim().isEmpty()) {
+			return null;
+		}
+		long maxMegabytes = DEFAULT_MAX_MEGABYTES;
+		try {
+			maxMegabytes = Long.parseLong(System.getProperty(SIZE_PROPERTY, Long.toString(DEFAULT_MAX_MEGABYTES)));
+		} catch (final NumberFormatException e) {
+			LOGGER.warn("Invalid disk cache size, using " + DEFAULT_MAX_MEGABYTES + " MB", e);
+		}
+		try {
+			return new DiskBlockCache(Paths.get(dir.trim()), maxMegabytes * 1024 * 1024);
+		} catch (final IOException | RuntimeException e) {
+			LOGGER.warn("Could not use the disk cache in " + dir + ", it is disabled", e);
+			return null;
+		}
+	}
+
+	/**
+	 * @param uri     the uri of the file
+	 * @param version the version of the file
+	 * @param index   the block index
+	 * @return the block or <code>null</code> if it is not cached
+	 */
+	public byte[] get(final URI uri, final String version, final long index) {
+		final String name = name(uri, version, index);
+		synchronized (m_files) {
+			if (m_files.get(name) == null) {
+				m_misses.incrementAndGet();
+				return null;
+			}
+		}
+		final Path file = m_dir.resolve(name);
+		try {
+			final byte[] block = Files.readAllBytes(file);
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			m_hits.incrementAndGet();
+			return block;
+		} catch (final IOException e) {
+			// deleted by another process, treat it as a miss
+			remove(name);
+			m_misses.incrementAndGet();
+			return null;
+		}
+	}
+
+	/**
+	 * @param uri     the uri of the file
+	 * @param version the version of the file
+	 * @param index   the block index
+	 * @return whether the block is cached, does not count as an access
+	 */
+	public boolean contains(final URI uri, final String version, final long index) {
+		synchronized (m_files) {
+			return m_files.containsKey(name(uri, version, index));
+		}
+	}
+
+	/**
+	 * Writes the block, failures are logged and otherwise ignored.
+	 *
+	 * @param uri     the uri of the file
+	 * @param version the version of the file
+	 * @param index   the block index
+	 * @param block   the block
+	 */
+	public void put(final URI uri, final String version, final long index, final byte[] block) {
+		final String name = name(uri, version, index);
+		synchronized (m_files) {
+			if (m_files.containsKey(name)) {
+				return;
+			}
+		}
+		try {
+			// write to a temporary file first, readers never see partial blocks
+			final Path tmp = Files.createTempFile(m_dir, "tmp", ".part");
+			try {
+				Files.write(tmp, block);
+				Files.move(tmp, m_dir.resolve(name), StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (final IOException e) {
+			LOGGER.debug("Could not write block to the disk cache", e);
+			return;
+		}
+		synchronized (m_files) {
+			final Long previous = m_files.put(name, (long) block.length);
+			m_bytes += block.length - (previous == null ? 0 : previous);
+			evict();
+		}
+	}
+
+	/**
+	 * @return the number of blocks read from disk
+	 */
+	public long getHitCount() {
+		return m_hits.get();
+	}
+
+	/**
+	 * @return the number of blocks that were not on disk
+	 */
+	public long getMissCount() {
+		return m_misses.get();
+	}
+
+	/**
+	 * @return the size of the cached blocks in bytes
+	 */
+	public long getSize() {
+		synchronized (m_files) {
+			return m_bytes;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Disk block cache in " + m_dir + ": " + getHitCount() + " hits, " + getMissCount() + " misses, "
+				+ getSize() / (1024 * 1024) + " of " + m_maxBytes / (1024 * 1024) + " MB used";
+	}
+
+	/*
+	 * Reads the blocks of previous sessions, least recently used first.
+	 */
+	private void index() {
+		final File[] files = m_dir.toFile().listFiles((d, n) -> n.endsWith(SUFFIX));
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		synchronized (m_files) {
+			for (final File f : files) {
+				m_files.put(f.getName(), f.length());
+				m_bytes += f.length();
+			}
+			evict();
+		}
+	}
+
+	/* must hold the lock of m_files */
+	private void evict() {
+		final Iterator<Map.Entry<String, Long>> it = m_files.entrySet().iterator();
+		while (m_bytes > m_maxBytes && it.hasNext()) {
+			final Map.Entry<String, Long> eldest = it.next();
+			try {
+				Files.deleteIfExists(m_dir.resolve(eldest.getKey()));
+			} catch (final IOException e) {
+				LOGGER.debug("Could not delete cached block " + eldest.getKey(), e);
+			}
+			m_bytes -= eldest.getValue();
+			it.remove();
+		}
+	}
+
+	private void remove(final String name) {
+		synchronized (m_files) {
+			final Long size = m_files.remove(name);
+			if (size != null) {
+				m_bytes -= size;
+			}
+		}
+	}
+
+	private static String name(final URI uri, final String version, final long index) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			final byte[] hash = digest.digest((uri + "\n" + version + "\n" + index).getBytes(StandardCharsets.UTF_8));
+			final StringBuilder sb = new StringBuilder(hash.length * 2 + SUFFIX.length());
+			for (final byte b : hash) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.append(SUFFIX).toString();
+		} catch (final NoSuchAlgorithmException e) {
+			// every JVM provides SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,402 @@
+package org.knime.knip.io2.handle;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.knime.knip.io2.ImgSourceExecutors;
+import org.knime.knip.io2.resolver.HTTPLocation;
+import org.scijava.io.handle.AbstractDataHandle;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.plugin.Plugin;
+
+/**
+ * A read-only {@link DataHandle} for files on HTTP(S) servers. The file is
+ * fetched in aligned blocks of {@link BlockCache#BLOCK_SIZE} bytes with HTTP
+ * range requests, only the blocks that are actually read are transferred. The
+ * blocks are kept in the shared {@link BlockCache}, on a miss the following
+ * blocks are fetched concurrently in the background. From servers that do not
+ * support range requests the complete file is downloaded once per handle into
+ * a temporary file, which is deleted when the handle is closed.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+@Plugin(type = DataHandle.class)
+public class HTTPRangeHandle extends AbstractDataHandle<HTTPLocation> {
+
+	/* Number of blocks fetched ahead of a missed block */
+	private static final int PREFETCH_BLOCKS = 2;
+
+	private static final int TIMEOUT_MILLIS = 30000;
+
+	/* Blocks that are currently fetched, shared to avoid duplicate requests */
+	private static final Map<String, CompletableFuture<byte[]>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+	private long m_length = -1;
+
+	/*
+	 * ETag or last modification date of the file, part of the cache key. A
+	 * transient version if the server reports neither.
+	 */
+	private String m_version;
+
+	private boolean m_transient;
+
+	private boolean m_rangesSupported;
+
+	private long m_offset;
+
+	/* The complete file, if the server does not support range requests */
+	private Path m_downloadPath;
+
+	private RandomAccessFile m_download;
+
+	@Override
+	public boolean isReadable() {
+		return true;
+	}
+
+	@Override
+	public boolean isWritable() {
+		return false;
+	}
+
+	@Override
+	public boolean exists() throws IOException {
+		try {
+			init();
+			return true;
+		} catch (final IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public long offset() throws IOException {
+		return m_offset;
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		m_offset = pos;
+	}
+
+	@Override
+	public long length() throws IOException {
+		init();
+		return m_length;
+	}
+
+	@Override
+	public void setLength(final long length) throws IOException {
+		throw new IOException("HTTP handles are read-only");
+	}
+
+	@Override
+	public int read() throws IOException {
+		init();
+		if (m_offset >= m_length) {
+			return -1;
+		}
+		return readByte() & 0xff;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		init();
+		if (m_offset >= m_length) {
+			throw new EOFException();
+		}
+		final byte[] block = block(m_offset / BlockCache.BLOCK_SIZE);
+		return block[(int) (m_offset++ % BlockCache.BLOCK_SIZE)];
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		init();
+		if (len == 0) {
+			return 0;
+		}
+		if (m_offset >= m_length) {
+			return -1;
+		}
+		final int n = (int) Math.min(len, m_length - m_offset);
+		int done = 0;
+		while (done < n) {
+			final byte[] block = block(m_offset / BlockCache.BLOCK_SIZE);
+			final int pos = (int) (m_offset % BlockCache.BLOCK_SIZE);
+			final int count = Math.min(n - done, block.length - pos);
+			System.arraycopy(block, pos, b, off + done, count);
+			done += count;
+			m_offset += count;
+		}
+		return n;
+	}
+
+	@Override
+	public void readFully(final byte[] b, final int off, final int len) throws IOException {
+		int done = 0;
+		while (done < len) {
+			final int n = read(b, off + done, len - done);
+			if (n < 0) {
+				throw new EOFException();
+			}
+			done += n;
+		}
+	}
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		init();
+		final int skipped = (int) Math.max(0, Math.min(n, m_length - m_offset));
+		m_offset += skipped;
+		return skipped;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		throw new IOException("HTTP handles are read-only");
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		throw new IOException("HTTP handles are read-only");
+	}
+
+	@Override
+	public Class<HTTPLocation> getType() {
+		return HTTPLocation.class;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// connections are closed after each request, the blocks of a file without
+		// version are only valid while it is open
+		if (m_transient) {
+			BlockCache.getInstance().invalidate(uri(), m_version);
+		}
+		if (m_download != null) {
+			try {
+				m_download.close();
+			} finally {
+				Files.deleteIfExists(m_downloadPath);
+				m_download = null;
+				m_downloadPath = null;
+			}
+		}
+	}
+
+	/*
+	 * Requests the length, the version and whether ranges are supported.
+	 */
+	private void init() throws IOException {
+		if (m_length >= 0) {
+			return;
+		}
+		final HttpURLConnection con = open(uri());
+		try {
+			con.setRequestMethod("HEAD");
+			if (con.getResponseCode() != HttpURLConnection.HTTP_OK) {
+				throw new IOException("Could not access " + uri() + ": " + con.getResponseCode() + " "
+						+ con.getResponseMessage());
+			}
+			final long length = con.getContentLengthLong();
+			if (length < 0) {
+				throw new IOException("Server did not report the length of " + uri());
+			}
+			m_version = con.getHeaderField("ETag");
+			if (m_version == null && con.getLastModified() != 0) {
+				m_version = Long.toString(con.getLastModified());
+			}
+			if (m_version == null) {
+				m_version = BlockCache.newTransientVersion();
+				m_transient = true;
+			}
+			m_rangesSupported = "bytes".equalsIgnoreCase(con.getHeaderField("Accept-Ranges"));
+			m_length = length;
+		} finally {
+			con.disconnect();
+		}
+	}
+
+	/*
+	 * Returns the given block, fetching it and the following blocks if needed.
+	 */
+	private byte[] block(final long index) throws IOException {
+		final BlockCache cache = BlockCache.getInstance();
+		byte[] block = cache.get(uri(), m_version, index);
+		if (block != null) {
+			return block;
+		}
+
+		if (!m_rangesSupported) {
+			return downloadedBlock(index);
+		}
+
+		final CompletableFuture<byte[]> future = fetchAsync(index);
+		final long numBlocks = (m_length + BlockCache.BLOCK_SIZE - 1) / BlockCache.BLOCK_SIZE;
+		for (long i = index + 1; i <= index + PREFETCH_BLOCKS && i < numBlocks; i++) {
+			if (!cache.contains(uri(), m_version, i)) {
+				fetchAsync(i);
+			}
+		}
+		try {
+			block = future.join();
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			}
+			throw new IOException("Could not read block " + index + " of " + uri(), e.getCause());
+		}
+		return block;
+	}
+
+	/*
+	 * Fetches the given block in the background, or joins the fetch of another
+	 * handle that is already in flight. The fetch is started outside of the map,
+	 * it is removed from the map once it is done.
+	 */
+	private CompletableFuture<byte[]> fetchAsync(final long index) {
+		final String key = uri() + "#" + m_version + "#" + index;
+		final CompletableFuture<byte[]> future = new CompletableFuture<>();
+		final CompletableFuture<byte[]> inFlight = IN_FLIGHT.putIfAbsent(key, future);
+		if (inFlight != null) {
+			return inFlight;
+		}
+		try {
+			ImgSourceExecutors.defaultExecutor().execute(() -> {
+				try {
+					future.complete(fetch(index));
+				} catch (final IOException e) {
+					future.completeExceptionally(new UncheckedIOException(e));
+				} catch (final Throwable t) {
+					future.completeExceptionally(t);
+				} finally {
+					IN_FLIGHT.remove(key, future);
+				}
+			});
+		} catch (final RuntimeException e) {
+			// rejected by the executor
+			IN_FLIGHT.remove(key, future);
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/*
+	 * Reads a block from the downloaded file and puts it into the cache, the file
+	 * is downloaded on the first miss. Evicted blocks are read again from the
+	 * download instead of the server.
+	 */
+	private byte[] downloadedBlock(final long index) throws IOException {
+		if (m_download == null) {
+			download();
+		}
+		final long start = index * BlockCache.BLOCK_SIZE;
+		final byte[] block = new byte[(int) Math.min(BlockCache.BLOCK_SIZE, m_length - start)];
+		m_download.seek(start);
+		m_download.readFully(block);
+		BlockCache.getInstance().put(uri(), m_version, index, block);
+		return block;
+	}
+
+	/*
+	 * Downloads the complete file into a temporary file.
+	 */
+	private void download() throws IOException {
+		final Path path = Files.createTempFile("knip-http-", ".bin");
+		try {
+			final HttpURLConnection con = open(uri());
+			try {
+				final int code = con.getResponseCode();
+				if (code != HttpURLConnection.HTTP_OK) {
+					throw new IOException("Could not read " + uri() + ": " + code + " " + con.getResponseMessage());
+				}
+				try (InputStream in = con.getInputStream()) {
+					Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				con.disconnect();
+			}
+			if (Files.size(path) != m_length) {
+				throw new IOException("Received " + Files.size(path) + " of " + m_length + " bytes of " + uri());
+			}
+			m_download = new RandomAccessFile(path.toFile(), "r");
+			m_downloadPath = path;
+		} catch (final IOException | RuntimeException e) {
+			Files.deleteIfExists(path);
+			throw e;
+		}
+	}
+
+	/*
+	 * Fetches a block with a range request and puts it into the cache.
+	 */
+	private byte[] fetch(final long index) throws IOException {
+		final long start = index * BlockCache.BLOCK_SIZE;
+		final long end = Math.min(m_length, start + BlockCache.BLOCK_SIZE) - 1;
+
+		final HttpURLConnection con = open(uri());
+		try {
+			con.setRequestProperty("Range", "bytes=" + start + "-" + end);
+			final int code = con.getResponseCode();
+			try (InputStream in = con.getInputStream()) {
+				if (code == HttpURLConnection.HTTP_PARTIAL) {
+					final byte[] block = readFully(in, (int) (end - start + 1));
+					BlockCache.getInstance().put(uri(), m_version, index, block);
+					return block;
+				} else if (code == HttpURLConnection.HTTP_OK) {
+					// the server ignored the range it announced, cache all blocks of the file
+					byte[] requested = null;
+					for (long i = 0; i * BlockCache.BLOCK_SIZE < m_length; i++) {
+						final int size = (int) Math.min(BlockCache.BLOCK_SIZE, m_length - i * BlockCache.BLOCK_SIZE);
+						final byte[] block = readFully(in, size);
+						BlockCache.getInstance().put(uri(), m_version, i, block);
+						if (i == index) {
+							requested = block;
+						}
+					}
+					return requested;
+				}
+			}
+			throw new IOException("Could not read " + uri() + ": " + code + " " + con.getResponseMessage());
+		} finally {
+			con.disconnect();
+		}
+	}
+
+	private static byte[] readFully(final InputStream in, final int size) throws IOException {
+		final byte[] b = new byte[size];
+		int done = 0;
+		while (done < size) {
+			final int n = in.read(b, done, size - done);
+			if (n < 0) {
+				throw new EOFException();
+			}
+			done += n;
+		}
+		return b;
+	}
+
+	private static HttpURLConnection open(final URI uri) throws IOException {
+		final HttpURLConnection con = (HttpURLConnection) uri.toURL().openConnection();
+		con.setConnectTimeout(TIMEOUT_MILLIS);
+		con.setReadTimeout(TIMEOUT_MILLIS);
+		return con;
+	}
+
+	private URI uri() {
+		return get().getURI();
+	}
+}
@@ -0,0 +1,320 @@
+package org.knime.knip.io2.handle;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Date;
+
+import org.knime.knip.io2.IO2Gateway;
+import org.knime.knip.io2.OffHeapImgFactory;
+import org.scijava.io.handle.AbstractDataHandle;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * A read-only {@link DataHandle} that maps local files into memory, reads are
+ * served directly from the page cache without a system call per read. Files
+ * larger than 1 GB are mapped in several chunks. The mappings are released
+ * when the handle is closed, so the file can be deleted or replaced afterwards.
+ * <p>
+ * The handle is not offered by the {@link org.scijava.io.handle.DataHandleService},
+ * which would also hand it out for writing, files are only opened with it by
+ * {@link #openForReading(Location)}, unless the system property
+ * {@value #ENABLED_PROPERTY} is <code>false</code>.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class MappedFileHandle extends AbstractDataHandle<FileLocation> {
+
+	/**
+	 * System property, if <code>false</code> files are read with the default
+	 * file handle.
+	 */
+	public static final String ENABLED_PROPERTY = "knip.io2.mappedFiles";
+
+	/* Size of the mapped chunks, a single mapping is limited to 2 GB */
+	private static final long CHUNK_SIZE = 1L << 30;
+
+	private MappedByteBuffer[] m_chunks;
+
+	private long m_length = -1;
+
+	private long m_offset;
+
+	/**
+	 * Opens a location for reading, existing local files are mapped into memory,
+	 * all other locations are opened with the default handle of the context.
+	 *
+	 * @param loc the location
+	 * @return the handle, <code>null</code> if there is no handle for the
+	 *         location
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static DataHandle<Location> openForReading(final Location loc) {
+		if (loc instanceof FileLocation && !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY))) {
+			final File file = ((FileLocation) loc).getFile();
+			if (file.isFile() && file.canRead() && file.length() > 0) {
+				final MappedFileHandle handle = new MappedFileHandle();
+				handle.setContext(IO2Gateway.context());
+				handle.set((FileLocation) loc);
+				return (DataHandle) handle;
+			}
+		}
+		return IO2Gateway.handles().create(loc);
+	}
+
+	@Override
+	public boolean supports(final FileLocation loc) {
+		// only opened for reading, see openForReading
+		return false;
+	}
+
+	@Override
+	public boolean isReadable() {
+		return true;
+	}
+
+	@Override
+	public boolean isWritable() {
+		return false;
+	}
+
+	@Override
+	public boolean exists() throws IOException {
+		return get().getFile().exists();
+	}
+
+	@Override
+	public Date lastModified() throws IOException {
+		final long lastModified = get().getFile().lastModified();
+		return lastModified == 0 ? null : new Date(lastModified);
+	}
+
+	@Override
+	public long offset() throws IOException {
+		return m_offset;
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		if (pos < 0) {
+			throw new IOException("Negative seek offset: " + pos);
+		}
+		m_offset = pos;
+	}
+
+	@Override
+	public long length() throws IOException {
+		map();
+		return m_length;
+	}
+
+	@Override
+	public void setLength(final long length) throws IOException {
+		throw new IOException("Mapped file handles are read-only");
+	}
+
+	@Override
+	public int read() throws IOException {
+		map();
+		if (m_offset >= m_length) {
+			return -1;
+		}
+		return readByte() & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		map();
+		if (len == 0) {
+			return 0;
+		}
+		if (m_offset >= m_length) {
+			return -1;
+		}
+		final int n = (int) Math.min(len, m_length - m_offset);
+		int done = 0;
+		while (done < n) {
+			final MappedByteBuffer chunk = m_chunks[(int) (m_offset / CHUNK_SIZE)];
+			final int pos = (int) (m_offset % CHUNK_SIZE);
+			final int count = Math.min(n - done, chunk.limit() - pos);
+			chunk.position(pos);
+			chunk.get(b, off + done, count);
+			done += count;
+			m_offset += count;
+		}
+		return n;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		map();
+		if (m_offset >= m_length) {
+			throw new EOFException();
+		}
+		final byte b = m_chunks[(int) (m_offset / CHUNK_SIZE)].get((int) (m_offset % CHUNK_SIZE));
+		m_offset++;
+		return b;
+	}
+
+	@Override
+	public void readFully(final byte[] b, final int off, final int len) throws IOException {
+		int done = 0;
+		while (done < len) {
+			final int n = read(b, off + done, len - done);
+			if (n < 0) {
+				throw new EOFException();
+			}
+			done += n;
+		}
+	}
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		map();
+		final int skipped = (int) Math.max(0, Math.min(n, m_length - m_offset));
+		m_offset += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xff;
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		final MappedByteBuffer chunk = chunkContaining(2);
+		if (chunk == null) {
+			final int b0 = readUnsignedByte();
+			final int b1 = readUnsignedByte();
+			return (short) (isLittleEndian() ? (b1 << 8) | b0 : (b0 << 8) | b1);
+		}
+		final short v = chunk.getShort((int) (m_offset % CHUNK_SIZE));
+		m_offset += 2;
+		return v;
+	}
+
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xffff;
+	}
+
+	@Override
+	public char readChar() throws IOException {
+		return (char) readShort();
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		final MappedByteBuffer chunk = chunkContaining(4);
+		if (chunk == null) {
+			final int s0 = readUnsignedShort();
+			final int s1 = readUnsignedShort();
+			return isLittleEndian() ? (s1 << 16) | s0 : (s0 << 16) | s1;
+		}
+		final int v = chunk.getInt((int) (m_offset % CHUNK_SIZE));
+		m_offset += 4;
+		return v;
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		final MappedByteBuffer chunk = chunkContaining(8);
+		if (chunk == null) {
+			final long i0 = readInt() & 0xffffffffL;
+			final long i1 = readInt() & 0xffffffffL;
+			return isLittleEndian() ? (i1 << 32) | i0 : (i0 << 32) | i1;
+		}
+		final long v = chunk.getLong((int) (m_offset % CHUNK_SIZE));
+		m_offset += 8;
+		return v;
+	}
+
+	@Override
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		throw new IOException("Mapped file handles are read-only");
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		throw new IOException("Mapped file handles are read-only");
+	}
+
+	@Override
+	public Class<FileLocation> getType() {
+		return FileLocation.class;
+	}
+
+	@Override
+	public void close() throws IOException {
+		final MappedByteBuffer[] chunks = m_chunks;
+		m_chunks = null;
+		m_length = -1;
+		// unmap right away, an open mapping locks the file on Windows
+		if (chunks != null) {
+			for (final MappedByteBuffer chunk : chunks) {
+				OffHeapImgFactory.release(chunk);
+			}
+		}
+	}
+
+	/*
+	 * Returns the chunk that contains the next count bytes with the byte order of
+	 * this handle set, or null if they span two chunks.
+	 */
+	private MappedByteBuffer chunkContaining(final int count) throws IOException {
+		map();
+		if (m_offset + count > m_length) {
+			throw new EOFException();
+		}
+		if (m_offset / CHUNK_SIZE != (m_offset + count - 1) / CHUNK_SIZE) {
+			return null;
+		}
+		final MappedByteBuffer chunk = m_chunks[(int) (m_offset / CHUNK_SIZE)];
+		chunk.order(isLittleEndian() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		return chunk;
+	}
+
+	/*
+	 * Maps the file on first access.
+	 */
+	private void map() throws IOException {
+		if (m_chunks != null) {
+			return;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(get().getFile(), "r");
+				FileChannel channel = raf.getChannel()) {
+			final long length = channel.size();
+			final MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+			for (int i = 0; i < chunks.length; i++) {
+				final long start = i * CHUNK_SIZE;
+				chunks[i] = channel.map(MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, length - start));
+			}
+			// the mappings stay valid after the channel has been closed
+			m_chunks = chunks;
+			m_length = length;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package org.knime.knip.io2.handle;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.scijava.io.handle.AbstractDataHandle;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.io.location.Location;
+
+/**
+ * A {@link DataHandle} decorator that buffers the reads of another handle. The
+ * read-ahead adapts to the access pattern: it doubles while the handle is read
+ * sequentially and halves on every seek to a position outside of the buffer,
+ * so header and IFD scans are served with few reads of the underlying handle
+ * while random accesses do not read far more than needed. Reads larger than the
+ * read-ahead bypass the buffer.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class ReadAheadDataHandle extends AbstractDataHandle<Location> {
+
+	private static final int MIN_READ_AHEAD = 4 * 1024;
+
+	private static final int INITIAL_READ_AHEAD = 16 * 1024;
+
+	private static final int MAX_READ_AHEAD = 1024 * 1024;
+
+	private final DataHandle<Location> m_handle;
+
+	/* grows with the read-ahead */
+	private byte[] m_buffer = new byte[INITIAL_READ_AHEAD];
+
+	/* file offset of the first buffered byte */
+	private long m_bufferStart;
+
+	/* number of valid bytes in the buffer */
+	private int m_bufferLength;
+
+	private int m_readAhead = INITIAL_READ_AHEAD;
+
+	private long m_offset;
+
+	/**
+	 * @param handle the handle to buffer, it is closed with this handle
+	 */
+	public ReadAheadDataHandle(final DataHandle<Location> handle) {
+		m_handle = handle;
+		set(handle.get());
+		if (handle.getContext() != null) {
+			setContext(handle.getContext());
+		}
+	}
+
+	/**
+	 * Buffers the given handle unless it is already served from memory.
+	 *
+	 * @param handle the handle, can be <code>null</code>
+	 * @return the buffered handle
+	 */
+	public static DataHandle<Location> wrap(final DataHandle<Location> handle) {
+		if (handle == null || handle instanceof ReadAheadDataHandle || handle instanceof MappedFileHandle) {
+			return handle;
+		}
+		return new ReadAheadDataHandle(handle);
+	}
+
+	@Override
+	public boolean isReadable() {
+		return m_handle.isReadable();
+	}
+
+	@Override
+	public boolean isWritable() {
+		return m_handle.isWritable();
+	}
+
+	@Override
+	public boolean exists() throws IOException {
+		return m_handle.exists();
+	}
+
+	@Override
+	public long offset() throws IOException {
+		return m_offset;
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		m_offset = pos;
+	}
+
+	@Override
+	public long length() throws IOException {
+		return m_handle.length();
+	}
+
+	@Override
+	public void setLength(final long length) throws IOException {
+		invalidate();
+		m_handle.setLength(length);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!buffered(m_offset) && fill() <= 0) {
+			return -1;
+		}
+		return m_buffer[(int) (m_offset++ - m_bufferStart)] & 0xff;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		final int b = read();
+		if (b < 0) {
+			throw new EOFException();
+		}
+		return (byte) b;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int done = 0;
+		if (buffered(m_offset)) {
+			done = copyFromBuffer(b, off, len);
+		}
+		while (done < len) {
+			final int remaining = len - done;
+			if (remaining >= m_readAhead) {
+				// large reads bypass the buffer
+				m_handle.seek(m_offset);
+				final int n = m_handle.read(b, off + done, remaining);
+				if (n <= 0) {
+					break;
+				}
+				m_offset += n;
+				done += n;
+			} else {
+				if (fill() <= 0) {
+					break;
+				}
+				done += copyFromBuffer(b, off + done, remaining);
+			}
+		}
+		return done == 0 ? -1 : done;
+	}
+
+	@Override
+	public void readFully(final byte[] b, final int off, final int len) throws IOException {
+		int done = 0;
+		while (done < len) {
+			final int n = read(b, off + done, len - done);
+			if (n < 0) {
+				throw new EOFException();
+			}
+			done += n;
+		}
+	}
+
+	@Override
+	public int skipBytes(final int n) throws IOException {
+		final int skipped = (int) Math.max(0, Math.min(n, length() - m_offset));
+		m_offset += skipped;
+		return skipped;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		invalidate();
+		m_handle.seek(m_offset);
+		m_handle.write(b);
+		m_offset++;
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		invalidate();
+		m_handle.seek(m_offset);
+		m_handle.write(b, off, len);
+		m_offset += len;
+	}
+
+	@Override
+	public Class<Location> getType() {
+		return Location.class;
+	}
+
+	@Override
+	public void close() throws IOException {
+		invalidate();
+		m_handle.close();
+	}
+
+	private boolean buffered(final long pos) {
+		return pos >= m_bufferStart && pos < m_bufferStart + m_bufferLength;
+	}
+
+	private int copyFromBuffer(final byte[] b, final int off, final int len) {
+		final int pos = (int) (m_offset - m_bufferStart);
+		final int n = Math.min(len, m_bufferLength - pos);
+		System.arraycopy(m_buffer, pos, b, off, n);
+		m_offset += n;
+		return n;
+	}
+
+	/*
+	 * Reads ahead from the current offset, adapting the read-ahead to whether the
+	 * offset continues the buffer, returns the number of buffered bytes.
+	 */
+	private int fill() throws IOException {
+		if (m_bufferLength > 0 && m_offset == m_bufferStart + m_bufferLength) {
+			m_readAhead = Math.min(MAX_READ_AHEAD, m_readAhead * 2);
+		} else if (m_bufferLength > 0) {
+			m_readAhead = Math.max(MIN_READ_AHEAD, m_readAhead / 2);
+		}
+
+		if (m_buffer.length < m_readAhead) {
+			m_buffer = new byte[m_readAhead];
+		}
+
+		m_handle.seek(m_offset);
+		int n = 0;
+		while (n < m_readAhead) {
+			final int read = m_handle.read(m_buffer, n, m_readAhead - n);
+			if (read <= 0) {
+				break;
+			}
+			n += read;
+		}
+		m_bufferStart = m_offset;
+		m_bufferLength = n;
+		return n;
+	}
+
+	private void invalidate() {
+		m_bufferLength = 0;
+	}
+}
@@ -0,0 +1,166 @@
+package org.knime.knip.io2.handle;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformation;
+import org.knime.base.filehandling.remote.files.ConnectionMonitor;
+
+/**
+ * A pool of connections to remote servers shared by all rows and workers. The
+ * connections are held by {@link ConnectionMonitor}s that are pooled per
+ * {@link ConnectionInformation}, a borrowed monitor is used by one thread at a
+ * time and returned to the pool once its file has been read, so consecutive
+ * files reuse the open session instead of connecting again.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public final class RemoteConnectionPool {
+
+	/* Maximum number of idle connections kept per server */
+	private static final int MAX_IDLE = 8;
+
+	private static final RemoteConnectionPool INSTANCE = new RemoteConnectionPool();
+
+	private final Map<ConnectionInformation, Deque<ConnectionMonitor<?>>> m_idle = new HashMap<>();
+
+	/* Generation of each borrowed connection, guarded by m_idle */
+	private final Map<ConnectionMonitor<?>, Long> m_borrowed = new IdentityHashMap<>();
+
+	/* Incremented by closeIdle, connections of older generations are not pooled again */
+	private long m_generation;
+
+	private final AtomicLong m_created = new AtomicLong();
+
+	private final AtomicLong m_reused = new AtomicLong();
+
+	private RemoteConnectionPool() {
+		// singleton
+	}
+
+	/**
+	 * @return the pool shared by all remote handles
+	 */
+	public static RemoteConnectionPool getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Borrows a connection to the given server, it must be returned with
+	 * {@link #release(ConnectionInformation, ConnectionMonitor)} or discarded with
+	 * {@link #discard(ConnectionMonitor)}.
+	 *
+	 * @param info the connection information
+	 * @return an idle connection monitor or a new one that connects on first use
+	 */
+	public ConnectionMonitor<?> borrow(final ConnectionInformation info) {
+		final ConnectionMonitor<?> idle = borrowIdle(info);
+		return idle != null ? idle : create();
+	}
+
+	/**
+	 * Borrows an idle connection to the given server. Its session may have been
+	 * closed by the server in the meantime.
+	 *
+	 * @param info the connection information
+	 * @return an idle connection monitor or <code>null</code> if there is none
+	 */
+	public ConnectionMonitor<?> borrowIdle(final ConnectionInformation info) {
+		synchronized (m_idle) {
+			final Deque<ConnectionMonitor<?>> idle = m_idle.get(info);
+			if (idle != null && !idle.isEmpty()) {
+				m_reused.incrementAndGet();
+				final ConnectionMonitor<?> monitor = idle.pop();
+				m_borrowed.put(monitor, m_generation);
+				return monitor;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a new connection, it must be returned like a borrowed one.
+	 *
+	 * @return a new connection monitor that connects on first use
+	 */
+	@SuppressWarnings("rawtypes")
+	public ConnectionMonitor<?> create() {
+		m_created.incrementAndGet();
+		final ConnectionMonitor<?> monitor = new ConnectionMonitor();
+		synchronized (m_idle) {
+			m_borrowed.put(monitor, m_generation);
+		}
+		return monitor;
+	}
+
+	/**
+	 * Returns a borrowed connection to the pool, connections borrowed before the
+	 * last {@link #closeIdle()} are closed instead.
+	 *
+	 * @param info    the connection information
+	 * @param monitor the borrowed monitor
+	 */
+	public void release(final ConnectionInformation info, final ConnectionMonitor<?> monitor) {
+		synchronized (m_idle) {
+			final Long generation = m_borrowed.remove(monitor);
+			final Deque<ConnectionMonitor<?>> idle = m_idle.computeIfAbsent(info, i -> new ArrayDeque<>());
+			if (generation != null && generation == m_generation && idle.size() < MAX_IDLE) {
+				idle.push(monitor);
+				return;
+			}
+		}
+		monitor.closeAll();
+	}
+
+	/**
+	 * Closes a borrowed connection, e.g. after it failed.
+	 *
+	 * @param monitor the borrowed monitor
+	 */
+	public void discard(final ConnectionMonitor<?> monitor) {
+		synchronized (m_idle) {
+			m_borrowed.remove(monitor);
+		}
+		monitor.closeAll();
+	}
+
+	/**
+	 * Closes all idle connections, borrowed connections are closed once they are
+	 * returned.
+	 */
+	public void closeIdle() {
+		final List<ConnectionMonitor<?>> monitors = new ArrayList<>();
+		synchronized (m_idle) {
+			m_idle.values().forEach(monitors::addAll);
+			m_idle.clear();
+			m_generation++;
+		}
+		monitors.forEach(ConnectionMonitor::closeAll);
+	}
+
+	/**
+	 * @return the number of connections that were opened
+	 */
+	public long getCreatedCount() {
+		return m_created.get();
+	}
+
+	/**
+	 * @return the number of times an idle connection was reused
+	 */
+	public long getReusedCount() {
+		return m_reused.get();
+	}
+
+	@Override
+	public String toString() {
+		return "Remote connection pool: " + getCreatedCount() + " connections opened, " + getReusedCount()
+				+ " reused";
+	}
+}
@@ -0,0 +1,103 @@
+package org.knime.knip.io2.handle;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformation;
+import org.knime.base.filehandling.remote.files.ConnectionMonitor;
+import org.knime.base.filehandling.remote.files.RemoteFile;
+import org.knime.base.filehandling.remote.files.RemoteFileFactory;
+import org.knime.core.node.NodeLogger;
+import org.knime.knip.io2.resolver.RemoteLocation;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.plugin.Plugin;
+
+/**
+ * A read-only {@link DataHandle} for files on SSH and FTP servers. The files
+ * are streamed over connections borrowed from the
+ * {@link RemoteConnectionPool}, a connection is held only while its stream is
+ * open. If an idle connection of the pool fails, e.g. because the server has
+ * closed the session, the file is opened once more with a new connection.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+@Plugin(type = DataHandle.class)
+public class RemoteFileHandle extends AbstractStreamHandle<RemoteLocation> {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(RemoteFileHandle.class);
+
+	private long m_length = -1;
+
+	/* modification date and size of the file */
+	private String m_version;
+
+	@Override
+	protected InputStream openStream() throws IOException {
+		final RemoteConnectionPool pool = RemoteConnectionPool.getInstance();
+		final ConnectionInformation info = get().getConnectionInformation();
+		final ConnectionMonitor<?> idle = pool.borrowIdle(info);
+		if (idle != null) {
+			try {
+				return openStream(pool, info, idle);
+			} catch (final IOException e) {
+				LOGGER.debug("Idle connection to " + info.getHost() + " failed, reconnecting", e);
+			}
+		}
+		return openStream(pool, info, pool.create());
+	}
+
+	/*
+	 * Opens the file with the given connection, which is discarded if that fails
+	 * and returned to the pool once the stream is closed.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private InputStream openStream(final RemoteConnectionPool pool, final ConnectionInformation info,
+			final ConnectionMonitor monitor) throws IOException {
+		final InputStream stream;
+		try {
+			final RemoteFile<?> file = RemoteFileFactory.createRemoteFile(get().getURI(), info, monitor);
+			m_length = file.getSize();
+			m_version = file.lastModified() + "-" + m_length;
+			stream = file.openInputStream();
+		} catch (final Exception e) {
+			pool.discard(monitor);
+			throw e instanceof IOException ? (IOException) e
+					: new IOException("Could not open " + get().getURI() + ": " + e.getMessage(), e);
+		}
+		return new FilterInputStream(stream) {
+
+			private boolean m_released;
+
+			@Override
+			public void close() throws IOException {
+				if (m_released) {
+					return;
+				}
+				m_released = true;
+				try {
+					super.close();
+				} catch (final IOException e) {
+					pool.discard(monitor);
+					throw e;
+				}
+				pool.release(info, monitor);
+			}
+		};
+	}
+
+	@Override
+	protected long streamLength() {
+		return m_length;
+	}
+
+	@Override
+	protected String version() {
+		return m_version;
+	}
+
+	@Override
+	public Class<RemoteLocation> getType() {
+		return RemoteLocation.class;
+	}
+}
@@ -0,0 +1,54 @@
+package org.knime.knip.io2.handle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+
+import org.knime.knip.io2.resolver.URLLocation;
+import org.scijava.io.handle.DataHandle;
+import org.scijava.plugin.Plugin;
+
+/**
+ * A read-only {@link DataHandle} for remote files that can only be streamed
+ * from their url.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+@Plugin(type = DataHandle.class)
+public class URLStreamHandle extends AbstractStreamHandle<URLLocation> {
+
+	private static final int TIMEOUT_MILLIS = 30000;
+
+	private long m_length = -1;
+
+	/* modification date and length of the file, null if unknown */
+	private String m_version;
+
+	@Override
+	protected InputStream openStream() throws IOException {
+		final URLConnection con = get().getURL().openConnection();
+		con.setConnectTimeout(TIMEOUT_MILLIS);
+		con.setReadTimeout(TIMEOUT_MILLIS);
+		final InputStream stream = con.getInputStream();
+		m_length = con.getContentLengthLong();
+		if (m_version == null && con.getLastModified() != 0 && m_length >= 0) {
+			m_version = con.getLastModified() + "-" + m_length;
+		}
+		return stream;
+	}
+
+	@Override
+	protected long streamLength() {
+		return m_length;
+	}
+
+	@Override
+	protected String version() {
+		return m_version;
+	}
+
+	@Override
+	public Class<URLLocation> getType() {
+		return URLLocation.class;
+	}
+}
@@ -48,13 +48,22 @@
  */
 package org.knime.knip.io2.nodes.imgreader3;
 
+import java.util.Arrays;
+
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.NotConfigurableException;
 import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentDoubleRange;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
 import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelDoubleRange;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
 import org.knime.core.node.port.PortObjectSpec;
+import org.knime.knip.base.node.dialog.DialogComponentSubsetSelection2;
 import org.knime.knip.core.util.EnumUtils;
 import org.knime.knip.io2.nodes.imgreader3.ImgReaderSettings.ImgFactoryMode;
 
@@ -78,6 +87,14 @@ public abstract class AbstractImgReaderNodeDialog extends DefaultNodeSettingsPan
 		super.saveAdditionalSettingsTo(settings);
 	}
 
+	/**
+	 * Adds node specific groups to the options tab, called by
+	 * {@link #buildRemainingGUI()} before the other tabs are created.
+	 */
+	protected void addAdditionalOptions() {
+		// no additional options by default
+	}
+
 	protected void buildRemainingGUI() {
 		createNewGroup("Output");
 
@@ -90,29 +107,51 @@ public abstract class AbstractImgReaderNodeDialog extends DefaultNodeSettingsPan
 //				"Check file format for each file (may be slower)"));
 //		closeCurrentGroup();
 
-//		createNewGroup("Series & Groups");
-//		final SettingsModelBoolean readAllSeriesModel = ImgReaderSettings.createReadAllSeriesModel();
-//		final SettingsModelDoubleRange seriesSelectionRangeModel = ImgReaderSettings.createSeriesSelectionRangeModel();
-//		addDialogComponent(new DialogComponentBoolean(readAllSeriesModel, "Read all series"));
-//		addDialogComponent(
-//				new DialogComponentDoubleRange(seriesSelectionRangeModel, 0, Short.MAX_VALUE, 1, "Series index"));
-//
+		createNewGroup("Series & Groups");
+		final SettingsModelBoolean readAllSeriesModel = ImgReaderSettings.createReadAllSeriesModel();
+		final SettingsModelDoubleRange seriesSelectionRangeModel = ImgReaderSettings.createSeriesSelectionRangeModel();
+		addDialogComponent(new DialogComponentBoolean(readAllSeriesModel, "Read all series"));
+		addDialogComponent(
+				new DialogComponentDoubleRange(seriesSelectionRangeModel, 0, Short.MAX_VALUE, 1, "Series index"));
+
 		// addDialogComponent(
 		// new DialogComponentBoolean(ImgReaderSettings.createAppendSeriesNumberModel(),
 		// "Append series number"));
-//
-		// readAllSeriesModel
-//				.addChangeListener(e -> seriesSelectionRangeModel.setEnabled(!readAllSeriesModel.getBooleanValue()));
-		// seriesSelectionRangeModel.setEnabled(!readAllSeriesModel.getBooleanValue());
-//
+
+		readAllSeriesModel
+				.addChangeListener(e -> seriesSelectionRangeModel.setEnabled(!readAllSeriesModel.getBooleanValue()));
+		seriesSelectionRangeModel.setEnabled(!readAllSeriesModel.getBooleanValue());
+
 //		addDialogComponent(
 //				new DialogComponentBoolean(ImgReaderSettings.createIsGroupFilesModel(), "Load group files?"));
-//		closeCurrentGroup();
+		closeCurrentGroup();
 
-//		createNewTab("Subset Selection");
-//		createNewGroup("Image Subset Selection");
-//		addDialogComponent(new DialogComponentSubsetSelection2(ImgReaderSettings.createPlaneSelectionModel(), true,
-//				true, new int[] { 0, 1 }));
-//		closeCurrentGroup();
+		addAdditionalOptions();
+
+		createNewTab("Subset Selection");
+		createNewGroup("Image Subset Selection");
+		addDialogComponent(new DialogComponentSubsetSelection2(ImgReaderSettings.createPlaneSelectionModel(), true,
+				true, new int[] { 0, 1 }));
+		closeCurrentGroup();
+
+		createNewGroup("Spatial Crop");
+		final SettingsModelBoolean cropXYModel = ImgReaderSettings.createCropXYModel();
+		final SettingsModelIntegerBounded cropXModel = ImgReaderSettings.createCropXModel();
+		final SettingsModelIntegerBounded cropYModel = ImgReaderSettings.createCropYModel();
+		final SettingsModelIntegerBounded cropWidthModel = ImgReaderSettings.createCropWidthModel();
+		final SettingsModelIntegerBounded cropHeightModel = ImgReaderSettings.createCropHeightModel();
+		addDialogComponent(new DialogComponentBoolean(cropXYModel, "Crop X and Y"));
+		setHorizontalPlacement(true);
+		addDialogComponent(new DialogComponentNumber(cropXModel, "X", 1));
+		addDialogComponent(new DialogComponentNumber(cropYModel, "Y", 1));
+		addDialogComponent(new DialogComponentNumber(cropWidthModel, "Width", 1));
+		addDialogComponent(new DialogComponentNumber(cropHeightModel, "Height", 1));
+		setHorizontalPlacement(false);
+
+		final Runnable updateCrop = () -> Arrays.asList(cropXModel, cropYModel, cropWidthModel, cropHeightModel)
+				.forEach(m -> m.setEnabled(cropXYModel.getBooleanValue()));
+		cropXYModel.addChangeListener(e -> updateCrop.run());
+		updateCrop.run();
+		closeCurrentGroup();
 	}
 }
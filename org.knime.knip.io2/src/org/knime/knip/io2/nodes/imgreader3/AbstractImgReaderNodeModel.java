@@ -16,11 +16,16 @@ import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.defaultnodesettings.SettingsModel;
 import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelDoubleRange;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.core.node.port.PortType;
+import org.knime.knip.base.node.nodesettings.SettingsModelSubsetSelection2;
 import org.knime.knip.core.util.EnumUtils;
+import org.knime.knip.io2.OffHeapImgFactory;
 import org.knime.knip.io2.nodes.imgreader3.ImgReaderSettings.ImgFactoryMode;
 
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.cell.CellImgFactory;
@@ -41,6 +46,13 @@ public abstract class AbstractImgReaderNodeModel<T extends NativeType<T> & RealT
 	protected final SettingsModelBoolean m_readAllSeriesModel = ImgReaderSettings.createReadAllSeriesModel();
 	protected final SettingsModelDoubleRange m_seriesRangeSelectionModel = ImgReaderSettings
 			.createSeriesSelectionRangeModel();
+	protected final SettingsModelSubsetSelection2 m_planeSelectionModel = ImgReaderSettings
+			.createPlaneSelectionModel();
+	protected final SettingsModelBoolean m_cropXYModel = ImgReaderSettings.createCropXYModel();
+	protected final SettingsModelIntegerBounded m_cropXModel = ImgReaderSettings.createCropXModel();
+	protected final SettingsModelIntegerBounded m_cropYModel = ImgReaderSettings.createCropYModel();
+	protected final SettingsModelIntegerBounded m_cropWidthModel = ImgReaderSettings.createCropWidthModel();
+	protected final SettingsModelIntegerBounded m_cropHeightModel = ImgReaderSettings.createCropHeightModel();
 
 //	protected final SettingsModelString metadataModeModel = ImgReaderSettings.createMetaDataModeModel();
 //	protected final SettingsModelBoolean readAllMetaDataModel = ImgReaderSettings.createReadAllMetaDataModel();
@@ -54,8 +66,6 @@ public abstract class AbstractImgReaderNodeModel<T extends NativeType<T> & RealT
 //		settingsModels.add(m_checkFileFormatModel);
 //		settingsModels.add(m_isGroupFilesModel);
 		settingsModels.add(m_imgFactoryModel);
-//		settingsModels.add(m_readAllSeriesModel);
-//		settingsModels.add(m_seriesRangeSelectionModel);
 //		settingsModels.add(metadataModeModel);
 //		settingsModels.add(readAllMetaDataModel);
 
@@ -88,6 +98,14 @@ public abstract class AbstractImgReaderNodeModel<T extends NativeType<T> & RealT
 	@Override
 	protected void saveSettingsTo(NodeSettingsWO settings) {
 		settingsModels.forEach(s -> s.saveSettingsTo(settings));
+		m_readAllSeriesModel.saveSettingsTo(settings);
+		m_seriesRangeSelectionModel.saveSettingsTo(settings);
+		m_planeSelectionModel.saveSettingsTo(settings);
+		m_cropXYModel.saveSettingsTo(settings);
+		m_cropXModel.saveSettingsTo(settings);
+		m_cropYModel.saveSettingsTo(settings);
+		m_cropWidthModel.saveSettingsTo(settings);
+		m_cropHeightModel.saveSettingsTo(settings);
 	}
 
 	@Override
@@ -102,6 +120,41 @@ public abstract class AbstractImgReaderNodeModel<T extends NativeType<T> & RealT
 		for (SettingsModel sm : settingsModels) {
 			sm.loadSettingsFrom(settings);
 		}
+		try {
+			m_readAllSeriesModel.loadSettingsFrom(settings);
+			m_seriesRangeSelectionModel.loadSettingsFrom(settings);
+		} catch (final InvalidSettingsException e) {
+			// nodes created before the series selection only read the first series
+			m_readAllSeriesModel.setBooleanValue(false);
+			m_seriesRangeSelectionModel.setRange(0, 0);
+		}
+		try {
+			m_planeSelectionModel.loadSettingsFrom(settings);
+		} catch (final InvalidSettingsException e) {
+			// nodes created before the subset selection read all planes
+		}
+		try {
+			m_cropXYModel.loadSettingsFrom(settings);
+			m_cropXModel.loadSettingsFrom(settings);
+			m_cropYModel.loadSettingsFrom(settings);
+			m_cropWidthModel.loadSettingsFrom(settings);
+			m_cropHeightModel.loadSettingsFrom(settings);
+		} catch (final InvalidSettingsException e) {
+			// nodes created before the crop option read complete planes
+			m_cropXYModel.setBooleanValue(false);
+		}
+	}
+
+	/**
+	 * @return the region of the X and Y axes the images are cropped to,
+	 *         <code>null</code> if they are not cropped
+	 */
+	protected Interval getCropInterval() {
+		if (!m_cropXYModel.getBooleanValue()) {
+			return null;
+		}
+		return FinalInterval.createMinSize(m_cropXModel.getIntValue(), m_cropYModel.getIntValue(),
+				m_cropWidthModel.getIntValue(), m_cropHeightModel.getIntValue());
 	}
 
 	@Override
@@ -130,6 +183,8 @@ public abstract class AbstractImgReaderNodeModel<T extends NativeType<T> & RealT
 			factory = new CellImgFactory<>();
 		} else if (factorySetting == ImgFactoryMode.ARRAY_IMG) {
 			factory = new ArrayImgFactory<>();
+		} else if (factorySetting == ImgFactoryMode.OFF_HEAP_IMG) {
+			factory = new OffHeapImgFactory<>();
 		} else {
 			throw new IllegalStateException("Unknonw factory type " + factorySetting.toString());
 		}
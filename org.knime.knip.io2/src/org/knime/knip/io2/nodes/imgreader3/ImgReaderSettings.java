@@ -9,9 +9,11 @@ import io.scif.img.cell.SCIFIOCellImgFactory;
 import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelColumnName;
 import org.knime.core.node.defaultnodesettings.SettingsModelDoubleRange;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.knip.base.node.nodesettings.SettingsModelSubsetSelection2;
 import org.knime.knip.core.util.EnumUtils;
+import org.knime.knip.io2.OffHeapImgFactory;
 
 /**
  * Settings for the Image Reader nodes
@@ -25,7 +27,8 @@ public class ImgReaderSettings {
 	public enum ImgFactoryMode {
 	// FIXME update to typed versions of constructors
 	ARRAY_IMG("Array Image Factory", new ArrayImgFactory()), PLANAR_IMG("Planar Image Factory", new PlanarImgFactory()),
-	CELL_IMG("Cell Image Factory", new SCIFIOCellImgFactory());
+	CELL_IMG("Cell Image Factory", new SCIFIOCellImgFactory()),
+	OFF_HEAP_IMG("Off-Heap Image Factory", new OffHeapImgFactory());
 
 		private final String m_name;
 		private final ImgFactory m_factory;
@@ -79,6 +82,41 @@ public class ImgReaderSettings {
 		return new SettingsModelDoubleRange("Series range selection", 0, Short.MAX_VALUE);
 	}
 
+	/**
+	 * @return Model to store whether the images are cropped in X and Y
+	 */
+	public static SettingsModelBoolean createCropXYModel() {
+		return new SettingsModelBoolean("Crop XY", false);
+	}
+
+	/**
+	 * @return Model to store the first X index of the crop
+	 */
+	public static SettingsModelIntegerBounded createCropXModel() {
+		return new SettingsModelIntegerBounded("Crop X", 0, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return Model to store the first Y index of the crop
+	 */
+	public static SettingsModelIntegerBounded createCropYModel() {
+		return new SettingsModelIntegerBounded("Crop Y", 0, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return Model to store the width of the crop
+	 */
+	public static SettingsModelIntegerBounded createCropWidthModel() {
+		return new SettingsModelIntegerBounded("Crop width", 512, 1, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return Model to store the height of the crop
+	 */
+	public static SettingsModelIntegerBounded createCropHeightModel() {
+		return new SettingsModelIntegerBounded("Crop height", 512, 1, Integer.MAX_VALUE);
+	}
+
 	/**
 	 * @return Model to store the factory used to create the images
 	 */
@@ -115,4 +153,28 @@ public class ImgReaderSettings {
 	public static SettingsModelBoolean createAppendSeriesNumberModel() {
 		return new SettingsModelBoolean("Append series number", false);
 	}
+
+	/**
+	 * @return Model to store the number of images that are read concurrently.
+	 */
+	public static SettingsModelIntegerBounded createNumReaderThreadsModel() {
+		return new SettingsModelIntegerBounded("Number of reader threads",
+				Math.max(1, Runtime.getRuntime().availableProcessors()), 1, Short.MAX_VALUE);
+	}
+
+	/**
+	 * @return Model to store the number of threads that decode the planes of one
+	 *         image.
+	 */
+	public static SettingsModelIntegerBounded createNumPlaneDecodingThreadsModel() {
+		return new SettingsModelIntegerBounded("Number of plane decoding threads", 1, 1, Short.MAX_VALUE);
+	}
+
+	/**
+	 * @return Model to store whether the planes of an image are only read when
+	 *         they are written to the output.
+	 */
+	public static SettingsModelBoolean createLazyLoadingModel() {
+		return new SettingsModelBoolean("Load images lazily", false);
+	}
 }
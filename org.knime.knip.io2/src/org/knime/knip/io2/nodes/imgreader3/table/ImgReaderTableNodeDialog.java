@@ -2,7 +2,9 @@ package org.knime.knip.io2.nodes.imgreader3.table;
 
 
 import org.knime.core.data.uri.URIDataValue;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
 import org.knime.core.node.defaultnodesettings.DialogComponentColumnNameSelection;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.knip.io2.nodes.imgreader3.AbstractImgReaderNodeDialog;
 import org.knime.knip.io2.nodes.imgreader3.ImgReaderSettings;
@@ -35,4 +37,16 @@ public class ImgReaderTableNodeDialog extends AbstractImgReaderNodeDialog {
 //		addDialogComponent(new DialogComponentString(columnSuffixModel, "Column Suffix"));
 	}
 
+	@Override
+	protected void addAdditionalOptions() {
+		createNewGroup("Performance");
+		addDialogComponent(new DialogComponentNumber(ImgReaderSettings.createNumReaderThreadsModel(),
+				"Number of reader threads", 1));
+		addDialogComponent(new DialogComponentNumber(ImgReaderSettings.createNumPlaneDecodingThreadsModel(),
+				"Number of plane decoding threads", 1));
+		addDialogComponent(
+				new DialogComponentBoolean(ImgReaderSettings.createLazyLoadingModel(), "Load images lazily"));
+		closeCurrentGroup();
+	}
+
 }
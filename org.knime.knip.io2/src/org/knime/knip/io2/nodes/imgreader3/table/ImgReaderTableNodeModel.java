@@ -1,17 +1,36 @@
 package org.knime.knip.io2.nodes.imgreader3.table;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import net.imagej.ImgPlus;
+import net.imagej.axis.CalibratedAxis;
+import net.imagej.axis.TypedAxis;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.ImgView;
+import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Pair;
+import net.imglib2.view.Views;
 
 import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformation;
 import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformationPortObject;
+import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataRow;
@@ -22,6 +41,8 @@ import org.knime.core.data.RowKey;
 import org.knime.core.data.append.AppendedColumnRow;
 import org.knime.core.data.def.DefaultRow;
 import org.knime.core.data.def.StringCell;
+import org.knime.core.data.filestore.FileStoreCell;
+import org.knime.core.data.filestore.FileStoreUtil;
 import org.knime.core.data.uri.URIDataValue;
 import org.knime.core.data.xml.XMLCell;
 import org.knime.core.node.BufferedDataContainer;
@@ -30,8 +51,11 @@ import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.ExecutionMonitor;
 import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeLogger;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelColumnName;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.core.node.port.PortObject;
 import org.knime.core.node.port.PortObjectSpec;
@@ -40,6 +64,7 @@ import org.knime.core.node.streamable.InputPortRole;
 import org.knime.core.node.streamable.OutputPortRole;
 import org.knime.core.node.streamable.PartitionInfo;
 import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortObjectInput;
 import org.knime.core.node.streamable.PortOutput;
 import org.knime.core.node.streamable.RowInput;
 import org.knime.core.node.streamable.RowOutput;
@@ -49,12 +74,19 @@ import org.knime.knip.base.data.img.ImgPlusCellFactory;
 import org.knime.knip.base.node.NodeUtils;
 import org.knime.knip.core.util.EnumUtils;
 import org.knime.knip.io2.IO2Gateway;
+import org.knime.knip.io2.ImgRequest;
+import org.knime.knip.io2.ImgResult;
+import org.knime.knip.io2.OffHeapImgFactory;
 import org.knime.knip.io2.ScifioImgSource;
+import org.knime.knip.io2.handle.BlockCache;
+import org.knime.knip.io2.handle.RemoteConnectionPool;
 import org.knime.knip.io2.nodes.imgreader3.AbstractImgReaderNodeModel;
 import org.knime.knip.io2.nodes.imgreader3.ColumnCreationMode;
 import org.knime.knip.io2.nodes.imgreader3.ImgReaderSettings;
 import org.knime.knip.io2.nodes.imgreader3.ImgReaderSettings.ImgFactoryMode;
 import org.knime.knip.io2.resolver.AuthAwareResolver;
+import org.knime.knip.io2.resolver.DefaultKNIMELocationService;
+import org.knime.knip.io2.resolver.KNIMELocationService;
 import org.scijava.io.location.Location;
 import org.scijava.io.location.LocationResolver;
 import org.scijava.io.location.LocationService;
@@ -70,9 +102,17 @@ public class ImgReaderTableNodeModel<T extends RealType<T> & NativeType<T>> exte
 	private final SettingsModelString m_columnCreationModeModel = ImgReaderSettings.createColumnCreationModeModel();
 	private final SettingsModelString m_columnSuffixModel = ImgReaderSettings.createColumnSuffixNodeModel();
 	private final SettingsModelBoolean m_appendSeriesNumberModel = ImgReaderSettings.createAppendSeriesNumberModel();
+	private final SettingsModelIntegerBounded m_numReaderThreadsModel = ImgReaderSettings
+			.createNumReaderThreadsModel();
+	private final SettingsModelIntegerBounded m_numPlaneDecodingThreadsModel = ImgReaderSettings
+			.createNumPlaneDecodingThreadsModel();
+	private final SettingsModelBoolean m_lazyLoadingModel = ImgReaderSettings.createLazyLoadingModel();
 
 	private final LocationService loc = IO2Gateway.locations();
 
+	/** Number of input rows for which none of the selected series exists */
+	private final AtomicInteger m_missingSeriesCount = new AtomicInteger();
+
 	protected ImgReaderTableNodeModel() {
 		super(new PortType[] { ConnectionInformationPortObject.TYPE_OPTIONAL, BufferedDataTable.TYPE },
 				new PortType[] { BufferedDataTable.TYPE });
@@ -82,6 +122,37 @@ public class ImgReaderTableNodeModel<T extends RealType<T> & NativeType<T>> exte
 //						m_columnSuffixModel));
 	}
 
+	@Override
+	protected void saveSettingsTo(final NodeSettingsWO settings) {
+		super.saveSettingsTo(settings);
+		m_numReaderThreadsModel.saveSettingsTo(settings);
+		m_numPlaneDecodingThreadsModel.saveSettingsTo(settings);
+		m_lazyLoadingModel.saveSettingsTo(settings);
+	}
+
+	@Override
+	protected void loadValidatedSettingsFrom(final NodeSettingsRO settings) throws InvalidSettingsException {
+		super.loadValidatedSettingsFrom(settings);
+		try {
+			m_numReaderThreadsModel.loadSettingsFrom(settings);
+		} catch (final InvalidSettingsException e) {
+			// nodes created before this option read with one thread per processor
+			m_numReaderThreadsModel.setIntValue(ImgReaderSettings.createNumReaderThreadsModel().getIntValue());
+		}
+		try {
+			m_numPlaneDecodingThreadsModel.loadSettingsFrom(settings);
+		} catch (final InvalidSettingsException e) {
+			// nodes created before this option decoded the planes sequentially
+			m_numPlaneDecodingThreadsModel.setIntValue(1);
+		}
+		try {
+			m_lazyLoadingModel.loadSettingsFrom(settings);
+		} catch (final InvalidSettingsException e) {
+			// nodes created before this option read the planes eagerly
+			m_lazyLoadingModel.setBooleanValue(false);
+		}
+	}
+
 	@Override
 	protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
 
@@ -91,7 +162,6 @@ public class ImgReaderTableNodeModel<T extends RealType<T> & NativeType<T>> exte
 	@Override
 	protected PortObject[] execute(final PortObject[] inObjects, final ExecutionContext exec) throws Exception {
 		final ImgPlusCellFactory cellFactory = new ImgPlusCellFactory(exec);
-		final AtomicInteger errorCount = new AtomicInteger(0);
 
 		final ConnectionInformation connectionInfo;
 		final PortObjectSpec[] outSpec;
@@ -108,46 +178,240 @@ public class ImgReaderTableNodeModel<T extends RealType<T> & NativeType<T>> exte
 		final BufferedDataContainer container = exec.createDataContainer((DataTableSpec) outSpec[0]);
 		final int uriColIdx = getUriColIdx(in.getDataTableSpec());
 
+		m_missingSeriesCount.set(0);
+		final ParallelRowReader reader = createRowReader();
+		try {
+			reader.run(in, in.size(),
+					(row, source) -> readRow(row, source, uriColIdx, connectionInfo, cellFactory, exec),
+					container::addRowToTable, exec);
+		} finally {
+			reader.close();
+		}
+		logCacheStatistics();
+		warnMissingSeries();
+
+		container.close();
+		setInternalTables(new BufferedDataTable[] { container.getTable() });
+		return new PortObject[] { container.getTable() };
+	}
+
+	/*
+	 * Creates the parallel reader, the workers share one image source.
+	 */
+	private ParallelRowReader createRowReader() {
 		final boolean checkFormat = m_checkFileFormatModel.getBooleanValue();
 		final String factoryname = m_imgFactoryModel.getStringValue();
 		final ImgFactory factory = ImgFactoryMode.getFactoryFromName(factoryname);
 
 		final boolean isGroup = m_isGroupFilesModel.getBooleanValue();
 
+		// initialize the shared SCIFIO instance before the workers start
+		IO2Gateway.scifio();
+
 		final ScifioImgSource source = new ScifioImgSource(factory, checkFormat, isGroup);
-		for (final DataRow row : in) {
-			final URI uri = ((URIDataValue) row.getCell(uriColIdx)).getURIContent().getURI();
-			Location resolved;
-			final LocationResolver resolver = loc.getResolver(uri);
-			if (resolver == null) {
-				throw new IllegalArgumentException("No resulver found for location: " + loc.toString());
+		final int planeThreads = m_numPlaneDecodingThreadsModel.getIntValue();
+		source.setPlaneDecodingThreads(planeThreads);
+		source.setLazyLoading(m_lazyLoadingModel.getBooleanValue());
+
+		final int numWorkers = m_numReaderThreadsModel.getIntValue();
+		final ParallelRowReader reader = new ParallelRowReader(numWorkers, 2 * numWorkers, source);
+		if (planeThreads > 1) {
+			// every decoding thread of every worker borrows its own reader
+			source.setReaderPoolSize(2 * numWorkers * planeThreads);
+		}
+		return reader;
+	}
+
+	/*
+	 * Logs one summary line of the caches shared by all image sources, their
+	 * counters are accumulated since the start of the application.
+	 */
+	private void logCacheStatistics() {
+		final List<Object> caches = new ArrayList<>();
+		caches.add(ScifioImgSource.getFormatDetectionCache());
+		caches.add(ScifioImgSource.getMetadataCache());
+		if (loc instanceof DefaultKNIMELocationService) {
+			caches.add(((DefaultKNIMELocationService) loc).getLocationCache());
+		}
+		caches.add(BlockCache.getInstance());
+		if (BlockCache.getInstance().getDiskCache() != null) {
+			caches.add(BlockCache.getInstance().getDiskCache());
+		}
+		caches.add(RemoteConnectionPool.getInstance());
+		LOGGER.info(caches.stream().map(Object::toString)
+				.collect(Collectors.joining("; ", "Image reader caches: ", "")));
+	}
+
+	/*
+	 * Sets a warning if the selected series did not exist for some of the rows.
+	 */
+	private void warnMissingSeries() {
+		final int missing = m_missingSeriesCount.get();
+		if (missing > 0) {
+			setWarningMessage("None of the selected series exists for " + missing
+					+ " row(s), a missing cell was appended instead. View log for more info.");
+		}
+	}
+
+	/*
+	 * Reads the selected series of the image referenced by the given row, each
+	 * series is appended to a copy of the row. All series of a file are read
+	 * through the batch API with one reader, i.e. the file is parsed once, one
+	 * image at a time on the thread of the worker. The execution is checked for
+	 * cancellation before each series is consumed.
+	 */
+	private List<DataRow> readRow(final DataRow row, final ScifioImgSource source, final int uriColIdx,
+			final ConnectionInformation connectionInfo, final ImgPlusCellFactory cellFactory,
+			final ExecutionMonitor exec) throws Exception {
+		final URI uri = ((URIDataValue) row.getCell(uriColIdx)).getURIContent().getURI();
+		Location resolved;
+		final LocationResolver resolver = loc.getResolver(uri);
+		if (resolver == null) {
+			throw new IllegalArgumentException("No resulver found for location: " + loc.toString());
+		}
+
+		if (resolver instanceof AuthAwareResolver
+				&& (connectionInfo != null || ((AuthAwareResolver) resolver).isAuthRequired())) {
+			if (connectionInfo == null) {
+				// FIXME log warning, increase warning counter
+				return Collections.singletonList(
+						new AppendedColumnRow(row, new MissingCell("Connection information required but not provided!")));
 			}
+			resolved = loc instanceof KNIMELocationService
+					? ((KNIMELocationService) loc).resolveWithAuth(uri, connectionInfo)
+					: ((AuthAwareResolver) resolver).resolveWithAuth(uri, connectionInfo);
+		} else {
+			// the location service caches the resolved locations
+			resolved = loc.resolve(uri);
+		}
+
+		if (resolved == null) {
+			throw new IllegalArgumentException("Could not resolve url: " + uri.toString());
+		}
 
-			//
-			if (resolver instanceof AuthAwareResolver) {
-				if (connectionInfo == null) {
-					// FIXME log warning, increase warning counter
-					container.addRowToTable(new AppendedColumnRow(row,
-							new MissingCell("Connection information required but not provided!")));
-					continue;
+		final int numSeries = source.getSeriesCount(resolved);
+		final int seriesStart;
+		final int seriesEnd;
+		if (m_readAllSeriesModel.getBooleanValue()) {
+			seriesStart = 0;
+			seriesEnd = numSeries;
+		} else {
+			seriesStart = (int) m_seriesRangeSelectionModel.getMinRange();
+			seriesEnd = (int) Math.min(m_seriesRangeSelectionModel.getMaxRange() + 1, numSeries);
+		}
+
+		if (seriesStart >= seriesEnd) {
+			m_missingSeriesCount.incrementAndGet();
+			LOGGER.warn("None of the selected series exists in " + uri + " (row " + row.getKey() + "), the file has "
+					+ numSeries + " series.");
+			return Collections.singletonList(new AppendedColumnRow(row,
+					new MissingCell("None of the selected series exists, the file has " + numSeries + " series")));
+		}
+
+		final boolean suffixKeys = isMultiSeriesSelection();
+		final Interval crop = getCropInterval();
+		final List<ImgRequest> requests = new ArrayList<>(seriesEnd - seriesStart);
+		for (int series = seriesStart; series < seriesEnd; series++) {
+			requests.add(new ImgRequest(resolved, series, selectionConstraints(source, resolved, series), crop));
+		}
+
+		final List<DataRow> rows = new ArrayList<>(requests.size());
+		try (Stream<ImgResult> results = source.getImgs(requests)) {
+			// the images are read while the stream is consumed
+			results.forEach(result -> {
+				try {
+					exec.checkCanceled();
+					if (result.getError().isPresent()) {
+						throw result.getError().get();
+					}
+					rows.add(createRow(row, result.getRequest().getSeries(), result.getImg(), suffixKeys,
+							cellFactory));
+				} catch (final Throwable t) {
+					throw new CompletionException(t);
 				}
-				resolved = ((AuthAwareResolver) resolver).resolveWithAuth(uri, connectionInfo);
-			} else {
-				resolved = resolver.resolve(uri);
+			});
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
 			}
-
-			if (resolved == null) {
-				throw new IllegalArgumentException("Could not resolve url: " + uri.toString());
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
 			}
+			throw e;
+		}
+		return rows;
+	}
+
+	/*
+	 * The selected planes of the series, only these are read from the file.
+	 */
+	private Pair<TypedAxis, long[]>[] selectionConstraints(final ScifioImgSource source, final Location loc,
+			final int series) throws Exception {
+		final List<CalibratedAxis> axes = source.getAxes(loc, series);
+		return m_planeSelectionModel.createSelectionConstraints(source.getDimensions(loc, series),
+				axes.toArray(new CalibratedAxis[axes.size()]));
+	}
+
+	/*
+	 * Whether the settings can select more than one series per file.
+	 */
+	private boolean isMultiSeriesSelection() {
+		return m_readAllSeriesModel.getBooleanValue()
+				|| m_seriesRangeSelectionModel.getMaxRange() > m_seriesRangeSelectionModel.getMinRange();
+	}
 
-			// TODO add series reading!
-			final ImgPlus<RealType> img = source.getImg(resolved, 0);
-			container.addRowToTable(new AppendedColumnRow(row, cellFactory.createCell(img)));
+	/*
+	 * Appends the image to the row. If several series can be selected, every row
+	 * key gets the series index as suffix after a '#'. As the suffix is decided by
+	 * the settings and not per file, the keys of different input rows cannot
+	 * collide. Off-heap images are copied to the heap before the cell is
+	 * created, the cell keeps its image in memory, and their native memory is
+	 * released right away.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static DataRow createRow(final DataRow row, final int series, final ImgPlus<RealType> img,
+			final boolean suffixKey, final ImgPlusCellFactory cellFactory) throws IOException {
+		final ImgPlus<RealType> serializable = toSerializable(img);
+		if (OffHeapImgFactory.isOffHeap(img)) {
+			OffHeapImgFactory.free(img);
+		}
+		final DataCell cell;
+		// the cell factory writes into the shared file store
+		synchronized (cellFactory) {
+			cell = cellFactory.createCell(serializable);
+			if (serializable != img) {
+				FileStoreUtil.invokeFlush((FileStoreCell) cell);
+			}
+		}
+		if (!suffixKey) {
+			return new AppendedColumnRow(row, cell);
 		}
+		return new AppendedColumnRow(new RowKey(row.getKey().getString() + "#" + series), row, cell);
+	}
 
-		container.close();
-		setInternalTables(new BufferedDataTable[] { container.getTable() });
-		return new PortObject[] { container.getTable() };
+	/*
+	 * The externalizer can only write the storage of array images that are
+	 * backed by java arrays. Off-heap images are copied into an array image, so
+	 * the cell does not refer to their native memory once it is released.
+	 * Lazily loaded images are serialized through a view, their cells are read
+	 * while it is written.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	static ImgPlus<RealType> toSerializable(final ImgPlus<RealType> img) {
+		final ArrayImgFactory factory = new ArrayImgFactory((NativeType) img.firstElement());
+		if (OffHeapImgFactory.isOffHeap(img)) {
+			final Img copy = factory.create(img);
+			final Cursor<RealType> src = Views.flatIterable(img.getImg()).cursor();
+			final Cursor<RealType> dst = copy.cursor();
+			while (dst.hasNext()) {
+				dst.next().set(src.next());
+			}
+			return new ImgPlus(copy, img);
+		}
+		if (img.getImg() instanceof CachedCellImg) {
+			return new ImgPlus(ImgView.wrap((RandomAccessibleInterval) img.getImg(), factory), img);
+		}
+		return img;
 	}
 
 	private PortObjectSpec[] createOutSpec(final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
@@ -256,17 +520,42 @@ public class ImgReaderTableNodeModel<T extends RealType<T> & NativeType<T>> exte
 				final RowInput in = (RowInput) inputs[DATA];
 				final RowOutput out = (RowOutput) outputs[0];
 
-				final AtomicInteger encounteredExceptionsCount = new AtomicInteger(0);
+				final ConnectionInformation connectionInfo;
+				if (inputs[CONNECTION] != null) {
+					connectionInfo = ((ConnectionInformationPortObject) ((PortObjectInput) inputs[CONNECTION])
+							.getPortObject()).getConnectionInformation();
+				} else {
+					connectionInfo = null;
+				}
 
-				// FIXME implement
+				final ImgPlusCellFactory cellFactory = new ImgPlusCellFactory(exec);
+				final int uriColIdx = getUriColIdx(in.getDataTableSpec());
+
+				// the queue size of the reader bounds the number of rows in flight
+				m_missingSeriesCount.set(0);
+				final ParallelRowReader reader = createRowReader();
+				try {
+					reader.run(ParallelRowReader.iterable(in), -1,
+							(row, source) -> readRow(row, source, uriColIdx, connectionInfo, cellFactory, exec),
+							out::push, exec);
+				} finally {
+					reader.close();
+				}
+				logCacheStatistics();
+				warnMissingSeries();
 
 				in.close();
 				out.close();
-//				reader.close();
 			}
 		};
 	}
 
+	@Override
+	protected void onDispose() {
+		// connections of other nodes that are in use stay open
+		RemoteConnectionPool.getInstance().closeIdle();
+	}
+
 	@Override
 	protected void doLoadInternals(final File nodeInternDir, final ExecutionMonitor exec) {
 		// nothing to do
@@ -274,21 +563,12 @@ public class ImgReaderTableNodeModel<T extends RealType<T> & NativeType<T>> exte
 
 	@Override
 	public InputPortRole[] getInputPortRoles() {
-		return new InputPortRole[] { InputPortRole.DISTRIBUTED_STREAMABLE, InputPortRole.DISTRIBUTED_STREAMABLE };
+		return new InputPortRole[] { InputPortRole.NONDISTRIBUTED_NONSTREAMABLE,
+				InputPortRole.DISTRIBUTED_STREAMABLE };
 	}
 
 	@Override
 	public OutputPortRole[] getOutputPortRoles() {
 		return new OutputPortRole[] { OutputPortRole.DISTRIBUTED };
 	}
-
-	private void handleReadErrors(final AtomicInteger encounteredExceptionsCount, final RowKey rowKey,
-			final Throwable throwable) {
-		encounteredExceptionsCount.incrementAndGet();
-
-		LOGGER.warn("Encountered exception while reading from source: " + rowKey + " ; view log for more info.");
-
-		LOGGER.debug(throwable);
-	}
-
 }
@@ -0,0 +1,176 @@
+package org.knime.knip.io2.nodes.imgreader3.table;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.knime.core.data.DataRow;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.util.MultiThreadWorker;
+import org.knime.knip.io2.ScifioImgSource;
+
+/**
+ * Reads the images referenced by the rows of a table with a bounded number of
+ * concurrent workers. The workers share one {@link ScifioImgSource}, which
+ * lends each of them its own reader, the resulting rows, one or more per input
+ * row, are handed to a {@link RowSink} in input order.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+class ParallelRowReader {
+
+	/**
+	 * Reads a single input row with the given source, returns the output rows.
+	 */
+	interface RowReader {
+		List<DataRow> read(DataRow row, ScifioImgSource source) throws Exception;
+	}
+
+	/**
+	 * Receives the result rows, in the order of the input rows.
+	 */
+	interface RowSink {
+		void push(DataRow row) throws InterruptedException;
+	}
+
+	private final int m_numWorkers;
+
+	private final int m_maxQueueSize;
+
+	private final ScifioImgSource m_source;
+
+	/* reads the series of a single file concurrently, the async executor of the source */
+	private final ExecutorService m_seriesExecutor;
+
+	/**
+	 * @param numWorkers   maximum number of rows that are read concurrently
+	 * @param maxQueueSize maximum number of rows that are read ahead of the row
+	 *                     that is handed to the sink next
+	 * @param source       the source shared by all workers
+	 */
+	ParallelRowReader(final int numWorkers, final int maxQueueSize, final ScifioImgSource source) {
+		m_numWorkers = Math.max(1, numWorkers);
+		m_maxQueueSize = Math.max(m_numWorkers, maxQueueSize);
+		m_source = source;
+		// keep at least one warm reader per worker and per series thread
+		m_source.setReaderPoolSize(2 * m_numWorkers);
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		m_seriesExecutor = Executors.newFixedThreadPool(m_numWorkers, r -> {
+			final Thread t = new Thread(r, "KNIP-IO2-Series-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		m_source.setAsyncExecutor(m_seriesExecutor);
+	}
+
+	/**
+	 * Reads all rows and pushes the results to the sink, blocks until all rows
+	 * have been processed.
+	 *
+	 * @param rows     the input rows
+	 * @param rowCount the number of input rows used for progress reporting, or -1
+	 *                 if unknown
+	 * @param reader   reads a single row
+	 * @param sink     receives the results in input order
+	 * @param exec     used for progress reporting and cancellation
+	 * @throws Exception the first exception thrown by the reader or the sink
+	 */
+	void run(final Iterable<DataRow> rows, final long rowCount, final RowReader reader, final RowSink sink,
+			final ExecutionMonitor exec) throws Exception {
+
+		final MultiThreadWorker<DataRow, List<DataRow>> worker = new MultiThreadWorker<DataRow, List<DataRow>>(
+				m_maxQueueSize, m_numWorkers) {
+
+			@Override
+			protected List<DataRow> compute(final DataRow in, final long index) throws Exception {
+				return reader.read(in, m_source);
+			}
+
+			@Override
+			protected void processFinished(final ComputationTask task)
+					throws ExecutionException, CancellationException, InterruptedException {
+				for (final DataRow row : task.get()) {
+					sink.push(row);
+				}
+
+				final long done = task.getIndex() + 1;
+				if (rowCount > 0) {
+					exec.setProgress(done / (double) rowCount, "Read row " + done + " of " + rowCount);
+				} else {
+					exec.setMessage("Read row " + done);
+				}
+				try {
+					exec.checkCanceled();
+				} catch (final CanceledExecutionException e) {
+					throw new CancellationException();
+				}
+			}
+		};
+
+		try {
+			worker.run(rows);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		} catch (final CancellationException e) {
+			throw new CanceledExecutionException();
+		}
+	}
+
+	/**
+	 * Wraps a {@link RowInput} into an {@link Iterable} that can only be iterated
+	 * once. The rows are polled from the input as they are requested, which lets
+	 * the queue size of the reader bound the number of rows in flight.
+	 *
+	 * @param in the row input
+	 * @return an iterable over the remaining rows of the input
+	 */
+	static Iterable<DataRow> iterable(final RowInput in) {
+		return () -> new Iterator<DataRow>() {
+
+			private DataRow m_next;
+
+			@Override
+			public boolean hasNext() {
+				if (m_next == null) {
+					try {
+						m_next = in.poll();
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new CancellationException();
+					}
+				}
+				return m_next != null;
+			}
+
+			@Override
+			public DataRow next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				final DataRow next = m_next;
+				m_next = null;
+				return next;
+			}
+		};
+	}
+
+	/**
+	 * Closes the shared source.
+	 */
+	void close() {
+		m_source.close();
+		m_seriesExecutor.shutdown();
+	}
+}
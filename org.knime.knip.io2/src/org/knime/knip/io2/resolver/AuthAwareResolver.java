@@ -9,4 +9,12 @@ public interface AuthAwareResolver {
 
 	public Location resolveWithAuth(URI uri, ConnectionInformation conenctionInfo);
 
+	/**
+	 * @return whether uris can only be resolved with connection information,
+	 *         otherwise they are also resolved without
+	 */
+	public default boolean isAuthRequired() {
+		return true;
+	}
+
 }
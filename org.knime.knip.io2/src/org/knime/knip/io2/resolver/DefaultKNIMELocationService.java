@@ -1,10 +1,13 @@
 package org.knime.knip.io2.resolver;
 
 import java.net.URI;
-import java.util.HashMap;
+import java.net.URISyntaxException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformation;
 import org.scijava.Priority;
+import org.scijava.io.location.Location;
 import org.scijava.io.location.LocationResolver;
 import org.scijava.plugin.AbstractHandlerService;
 import org.scijava.plugin.Plugin;
@@ -14,11 +17,42 @@ import org.scijava.service.Service;
 public class DefaultKNIMELocationService extends AbstractHandlerService<URI, LocationResolver>
 		implements KNIMELocationService {
 
-	private final Map<String, LocationResolver> resolvers = new HashMap<>();
+	/* resolvers by scheme, uris without a scheme use the empty string */
+	private final Map<String, LocationResolver> resolvers = new ConcurrentHashMap<>();
+
+	private final ResolvedLocationCache locations = new ResolvedLocationCache();
 
 	@Override
 	public LocationResolver getResolver(URI uri) {
-		return resolvers.computeIfAbsent(uri.getScheme(), u -> getHandler(uri));
+		final String scheme = uri.getScheme() == null ? "" : uri.getScheme();
+		return resolvers.computeIfAbsent(scheme, u -> getHandler(uri));
+	}
+
+	@Override
+	public Location resolve(URI uri) throws URISyntaxException {
+		Location resolved = locations.get(uri, null);
+		if (resolved == null) {
+			final LocationResolver resolver = getResolver(uri);
+			resolved = resolver == null ? null : resolver.resolve(uri);
+			locations.put(uri, null, resolved);
+		}
+		return resolved;
 	}
 
+	@Override
+	public Location resolveWithAuth(URI uri, ConnectionInformation conenctionInfo) {
+		Location resolved = locations.get(uri, conenctionInfo);
+		if (resolved == null) {
+			resolved = KNIMELocationService.super.resolveWithAuth(uri, conenctionInfo);
+			locations.put(uri, conenctionInfo, resolved);
+		}
+		return resolved;
+	}
+
+	/**
+	 * @return the cache of resolved locations
+	 */
+	public ResolvedLocationCache getLocationCache() {
+		return locations;
+	}
 }
@@ -0,0 +1,37 @@
+package org.knime.knip.io2.resolver;
+
+import java.net.URI;
+
+import org.scijava.io.location.AbstractLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * {@link Location} of a file on a HTTP(S) server.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class HTTPLocation extends AbstractLocation {
+
+	private final URI m_uri;
+
+	/**
+	 * @param uri the http or https uri of the file
+	 */
+	public HTTPLocation(final URI uri) {
+		m_uri = uri;
+	}
+
+	@Override
+	public URI getURI() {
+		return m_uri;
+	}
+
+	@Override
+	public String getName() {
+		final String path = m_uri.getPath();
+		if (path == null || path.isEmpty()) {
+			return m_uri.getHost();
+		}
+		return path.substring(path.lastIndexOf('/') + 1);
+	}
+}
@@ -0,0 +1,28 @@
+package org.knime.knip.io2.resolver;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.scijava.Priority;
+import org.scijava.io.location.AbstractLocationResolver;
+import org.scijava.io.location.Location;
+import org.scijava.io.location.LocationResolver;
+import org.scijava.plugin.Plugin;
+
+/**
+ * {@link LocationResolver} for the <code>http://</code> and
+ * <code>https://</code> uri schemes
+ *
+ */
+@Plugin(type = LocationResolver.class, priority = Priority.HIGH)
+public class HTTPLocationResolver extends AbstractLocationResolver {
+
+	public HTTPLocationResolver() {
+		super("http", "https");
+	}
+
+	@Override
+	public Location resolve(final URI uri) throws URISyntaxException {
+		return new HTTPLocation(uri);
+	}
+}
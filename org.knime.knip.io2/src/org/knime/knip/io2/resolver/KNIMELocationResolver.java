@@ -1,16 +1,25 @@
 package org.knime.knip.io2.resolver;
 
+import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
 
 import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformation;
+import org.knime.core.util.pathresolve.ResolveException;
+import org.knime.core.util.pathresolve.ResolverUtil;
 import org.scijava.io.location.AbstractLocationResolver;
+import org.scijava.io.location.FileLocation;
 import org.scijava.io.location.Location;
 import org.scijava.io.location.LocationResolver;
 import org.scijava.plugin.Plugin;
 
 /**
- * {@link LocationResolver} for the <code>knime://</code> uri scheme
+ * {@link LocationResolver} for the <code>knime://</code> uri scheme. Uris
+ * relative to the workflow (<code>knime.workflow</code>), the node
+ * (<code>knime.node</code>) or the mountpoint (<code>knime.mountpoint</code>)
+ * and uris of named mountpoints, e.g. <code>LOCAL</code>, are translated to
+ * {@link FileLocation}s whenever the file is available locally. Files on
+ * remote mountpoints are streamed through a {@link URLLocation}.
  *
  */
 @Plugin(type = LocationResolver.class)
@@ -22,38 +31,35 @@ public class KNIMELocationResolver extends AbstractLocationResolver implements A
 
 	@Override
 	public Location resolve(final URI uri) throws URISyntaxException {
-		final String host = uri.getHost();
-		switch (host) {
-		case "knime.workflow":
-			return translateWorkflowLocation();
-		case "knime.mountpoint":
-			return translateMountpointLocation();
-		case "LOCAL":
-			return translateWorkSpaceLocation();
-		default:
-			throw new UnsupportedOperationException("NYI");
+		if (uri.getHost() == null) {
+			throw new URISyntaxException(uri.toString(), "Missing mountpoint or relative location");
 		}
+		final File file;
+		try {
+			file = ResolverUtil.resolveURItoLocalFile(uri);
+		} catch (final ResolveException e) {
+			throw new IllegalArgumentException("Could not resolve " + uri + ": " + e.getMessage(), e);
+		}
+		if (file != null) {
+			return new FileLocation(file);
+		}
+		// only remote mountpoints can not be mapped to a local file
+		return new URLLocation(uri);
 	}
 
-	private Location translateWorkSpaceLocation() {
-		// TODO
-		throw new UnsupportedOperationException("NYI");
-	}
-
-	private Location translateMountpointLocation() {
-		// TODO
-		throw new UnsupportedOperationException("NYI");
-	}
-
-	private Location translateWorkflowLocation() {
-		// TODO
-		throw new UnsupportedOperationException("NYI");
+	@Override
+	public boolean isAuthRequired() {
+		return false;
 	}
 
 	@Override
 	public Location resolveWithAuth(URI uri, ConnectionInformation conenctionInfo) {
-		// TODO Implement with the server connector node
-		throw new UnsupportedOperationException("NYI");
+		// mountpoints are authenticated by the workbench, not by the connection
+		try {
+			return resolve(uri);
+		} catch (final URISyntaxException e) {
+			throw new IllegalArgumentException(e);
+		}
 	}
 
 }
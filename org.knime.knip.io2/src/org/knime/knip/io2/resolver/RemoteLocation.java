@@ -0,0 +1,50 @@
+package org.knime.knip.io2.resolver;
+
+import java.net.URI;
+
+import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformation;
+import org.scijava.io.location.AbstractLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * {@link Location} of a file on a server that requires a connection, e.g. a
+ * SSH or FTP server.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class RemoteLocation extends AbstractLocation {
+
+	private final URI m_uri;
+
+	private final ConnectionInformation m_connectionInfo;
+
+	/**
+	 * @param uri            the uri of the file
+	 * @param connectionInfo the information to connect to the server
+	 */
+	public RemoteLocation(final URI uri, final ConnectionInformation connectionInfo) {
+		m_uri = uri;
+		m_connectionInfo = connectionInfo;
+	}
+
+	@Override
+	public URI getURI() {
+		return m_uri;
+	}
+
+	/**
+	 * @return the information to connect to the server
+	 */
+	public ConnectionInformation getConnectionInformation() {
+		return m_connectionInfo;
+	}
+
+	@Override
+	public String getName() {
+		final String path = m_uri.getPath();
+		if (path == null || path.isEmpty()) {
+			return m_uri.getHost();
+		}
+		return path.substring(path.lastIndexOf('/') + 1);
+	}
+}
@@ -0,0 +1,37 @@
+package org.knime.knip.io2.resolver;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformation;
+import org.scijava.io.location.AbstractLocationResolver;
+import org.scijava.io.location.Location;
+import org.scijava.io.location.LocationResolver;
+import org.scijava.plugin.Plugin;
+
+/**
+ * {@link LocationResolver} for the <code>ssh://</code> and <code>ftp://</code>
+ * uri schemes, the uris can only be resolved with connection information.
+ *
+ */
+@Plugin(type = LocationResolver.class)
+public class RemoteLocationResolver extends AbstractLocationResolver implements AuthAwareResolver {
+
+	public RemoteLocationResolver() {
+		super("ssh", "ftp");
+	}
+
+	@Override
+	public Location resolve(final URI uri) throws URISyntaxException {
+		throw new IllegalArgumentException("Connection information required to resolve " + uri);
+	}
+
+	@Override
+	public Location resolveWithAuth(URI uri, ConnectionInformation conenctionInfo) {
+		if (conenctionInfo == null) {
+			throw new IllegalArgumentException("Connection information required to resolve " + uri);
+		}
+		return new RemoteLocation(uri, conenctionInfo);
+	}
+
+}
@@ -0,0 +1,186 @@
+package org.knime.knip.io2.resolver;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformation;
+import org.scijava.io.location.Location;
+
+/**
+ * A bounded cache of resolved {@link Location}s, keyed by the {@link URI} and
+ * the connection information used to resolve it. Local files never expire, the
+ * locations of all other schemes, e.g. remote or authenticated ones, expire
+ * after a fixed time. Workflow, node and mountpoint relative
+ * <code>knime://</code> uris are not cached.
+ *
+ * @author Gabriel Einsdorf
+ */
+public class ResolvedLocationCache {
+
+	private static final int MAX_ENTRIES = 4096;
+
+	/* Time after which a location of a non-file scheme is resolved again */
+	private static final long REMOTE_TTL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	private final long m_remoteTtlNanos;
+
+	private final Map<Key, Entry> m_locations = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private final AtomicLong m_hits = new AtomicLong();
+
+	private final AtomicLong m_misses = new AtomicLong();
+
+	/**
+	 * Creates a cache whose remote locations expire after one minute.
+	 */
+	public ResolvedLocationCache() {
+		this(REMOTE_TTL_NANOS);
+	}
+
+	/*
+	 * Creates a cache with the given time to live of remote locations.
+	 */
+	ResolvedLocationCache(final long remoteTtlNanos) {
+		m_remoteTtlNanos = remoteTtlNanos;
+	}
+
+	/**
+	 * @param uri            the uri
+	 * @param connectionInfo the connection information used for resolution, can
+	 *                       be <code>null</code>
+	 * @return the cached location or <code>null</code> if the uri is not cached
+	 *         or its entry has expired
+	 */
+	Location get(final URI uri, final ConnectionInformation connectionInfo) {
+		final Key key = new Key(uri, connectionInfo);
+		final Entry entry;
+		synchronized (m_locations) {
+			entry = m_locations.get(key);
+			if (entry != null && entry.isExpired()) {
+				m_locations.remove(key);
+				m_misses.incrementAndGet();
+				return null;
+			}
+		}
+		if (entry == null) {
+			m_misses.incrementAndGet();
+			return null;
+		}
+		m_hits.incrementAndGet();
+		return entry.m_location;
+	}
+
+	/**
+	 * @param uri            the uri
+	 * @param connectionInfo the connection information used for resolution, can
+	 *                       be <code>null</code>
+	 * @param location       the resolved location, <code>null</code> is not
+	 *                       cached
+	 */
+	void put(final URI uri, final ConnectionInformation connectionInfo, final Location location) {
+		if (location == null || isContextRelative(uri)) {
+			return;
+		}
+		final long expiry = "file".equals(uri.getScheme()) && connectionInfo == null ? Long.MAX_VALUE
+				: System.nanoTime() + m_remoteTtlNanos;
+		synchronized (m_locations) {
+			m_locations.put(new Key(uri, connectionInfo), new Entry(location, expiry));
+		}
+	}
+
+	/*
+	 * Workflow, node and mountpoint relative knime uris resolve differently in
+	 * each workflow.
+	 */
+	static boolean isContextRelative(final URI uri) {
+		if (!"knime".equals(uri.getScheme())) {
+			return false;
+		}
+		final String host = uri.getHost();
+		return "knime.workflow".equals(host) || "knime.node".equals(host) || "knime.mountpoint".equals(host);
+	}
+
+	/**
+	 * @return the number of uris whose location was cached
+	 */
+	public long getHitCount() {
+		return m_hits.get();
+	}
+
+	/**
+	 * @return the number of uris that had to be resolved
+	 */
+	public long getMissCount() {
+		return m_misses.get();
+	}
+
+	/**
+	 * Removes all cached locations and resets the counters.
+	 */
+	public void clear() {
+		synchronized (m_locations) {
+			m_locations.clear();
+		}
+		m_hits.set(0);
+		m_misses.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "Resolved location cache: " + getHitCount() + " hits, " + getMissCount() + " misses";
+	}
+
+	private static final class Entry {
+
+		private final Location m_location;
+
+		private final long m_expiry;
+
+		private Entry(final Location location, final long expiry) {
+			m_location = location;
+			m_expiry = expiry;
+		}
+
+		private boolean isExpired() {
+			return m_expiry != Long.MAX_VALUE && System.nanoTime() - m_expiry > 0;
+		}
+	}
+
+	private static final class Key {
+
+		private final URI m_uri;
+
+		private final ConnectionInformation m_connectionInfo;
+
+		private Key(final URI uri, final ConnectionInformation connectionInfo) {
+			m_uri = uri;
+			m_connectionInfo = connectionInfo;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return m_uri.equals(other.m_uri) && Objects.equals(m_connectionInfo, other.m_connectionInfo);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(m_uri, m_connectionInfo);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package org.knime.knip.io2.resolver;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+
+import org.scijava.io.location.AbstractLocation;
+import org.scijava.io.location.Location;
+
+/**
+ * {@link Location} of a remote file that can only be streamed through its
+ * {@link URL}, e.g. a file on a KNIME server mountpoint.
+ *
+ * @author Gabriel Einsdorf (KNIME GmbH)
+ */
+public class URLLocation extends AbstractLocation {
+
+	private final URI m_uri;
+
+	/**
+	 * @param uri the uri of the file, it must be convertible to an {@link URL}
+	 */
+	public URLLocation(final URI uri) {
+		m_uri = uri;
+	}
+
+	@Override
+	public URI getURI() {
+		return m_uri;
+	}
+
+	/**
+	 * @return the url to stream the file from
+	 * @throws MalformedURLException if no protocol handler is registered for the
+	 *                               uri
+	 */
+	public URL getURL() throws MalformedURLException {
+		return m_uri.toURL();
+	}
+
+	@Override
+	public String getName() {
+		final String path = m_uri.getPath();
+		if (path == null || path.isEmpty()) {
+			return m_uri.getHost();
+		}
+		return path.substring(path.lastIndexOf('/') + 1);
+	}
+}